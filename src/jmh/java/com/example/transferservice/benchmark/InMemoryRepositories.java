@@ -0,0 +1,77 @@
+package com.example.transferservice.benchmark;
+
+import com.example.transferservice.entity.OutboxMessage;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.repository.OutboxMessageRepository;
+import com.example.transferservice.repository.TransferSagaRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Sostituti in memoria dei repository JPA, limitati ai metodi usati da TransferService e
+ * TransferSagaManager: i benchmark misurano l'orchestrazione senza PostgreSQL né Kafka.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    /**
+     * Saga indicizzati per sagaId; save restituisce la stessa istanza come farebbe il persistence context.
+     */
+    @SuppressWarnings("unchecked")
+    static TransferSagaRepository transferSagaRepository(Map<String, TransferSaga> store) {
+        return proxy(TransferSagaRepository.class, (method, args) -> switch (method) {
+            case "save" -> {
+                TransferSaga saga = (TransferSaga) args[0];
+                store.put(saga.getSagaId(), saga);
+                yield saga;
+            }
+            case "saveAll" -> {
+                List<TransferSaga> sagas = List.copyOf((Collection<TransferSaga>) args[0]);
+                sagas.forEach(saga -> store.put(saga.getSagaId(), saga));
+                yield sagas;
+            }
+            case "flush" -> null;
+            case "findBySagaId" -> Optional.ofNullable(store.get((String) args[0]));
+            case "findAllBySagaIdIn" -> ((Collection<String>) args[0]).stream()
+                    .distinct()
+                    .map(store::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    /**
+     * Outbox che scarta i messaggi: il costo misurato resta quello della serializzazione del comando.
+     */
+    static OutboxMessageRepository outboxMessageRepository() {
+        return proxy(OutboxMessageRepository.class, (method, args) -> switch (method) {
+            case "save" -> (OutboxMessage) args[0];
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> repositoryType, Handler handler) {
+        return (T) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "toString" -> "InMemory" + repositoryType.getSimpleName();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> handler.invoke(method.getName(), args);
+                });
+    }
+}
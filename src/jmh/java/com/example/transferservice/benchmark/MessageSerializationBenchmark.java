@@ -0,0 +1,105 @@
+package com.example.transferservice.benchmark;
+
+import com.example.transferservice.messages.CheckClubBudgetRequest;
+import com.example.transferservice.messages.CheckClubBudgetResponse;
+import com.example.transferservice.messages.CheckPlayerAvailabilityRequest;
+import com.example.transferservice.messages.CheckPlayerAvailabilityResponse;
+import com.example.transferservice.messages.TransferSagaStateChanged;
+import com.example.transferservice.messages.UpdateClubBudgetRequest;
+import com.example.transferservice.messages.UpdateClubBudgetResponse;
+import com.example.transferservice.messages.UpdatePlayerClubRequest;
+import com.example.transferservice.messages.UpdatePlayerClubResponse;
+import com.example.transferservice.messages.codec.SagaBinaryCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializzazione dei DTO del package messages: JSON, con un ObjectMapper configurato come quello di Spring Boot,
+ * contro il formato binario di {@link SagaBinaryCodec}. Le dimensioni dei payload vengono stampate al setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageSerializationBenchmark {
+
+    private static final String SAGA_ID = UUID.randomUUID().toString();
+    private static final BigDecimal TRANSFER_FEE = new BigDecimal("1000000");
+
+    private static final Map<String, Object> MESSAGES = Map.of(
+            "CheckClubBudgetRequest", new CheckClubBudgetRequest(SAGA_ID, 2L, TRANSFER_FEE),
+            "CheckClubBudgetResponse", new CheckClubBudgetResponse(SAGA_ID, 2L, true, null),
+            "CheckPlayerAvailabilityRequest", new CheckPlayerAvailabilityRequest(SAGA_ID, 1L, 3L),
+            "CheckPlayerAvailabilityResponse", new CheckPlayerAvailabilityResponse(SAGA_ID, 1L, true, null),
+            "UpdatePlayerClubRequest", new UpdatePlayerClubRequest(SAGA_ID, 1L, 3L),
+            "UpdatePlayerClubResponse", new UpdatePlayerClubResponse(SAGA_ID, 1L, true, null),
+            "UpdateClubBudgetRequest", new UpdateClubBudgetRequest(SAGA_ID, 2L, TRANSFER_FEE),
+            "UpdateClubBudgetResponse", new UpdateClubBudgetResponse(SAGA_ID, 2L, true, null),
+            "TransferSagaStateChanged", new TransferSagaStateChanged(SAGA_ID, "STARTED", UUID.randomUUID().toString()));
+
+    @Param({
+            "CheckClubBudgetRequest", "CheckClubBudgetResponse",
+            "CheckPlayerAvailabilityRequest", "CheckPlayerAvailabilityResponse",
+            "UpdatePlayerClubRequest", "UpdatePlayerClubResponse",
+            "UpdateClubBudgetRequest", "UpdateClubBudgetResponse",
+            "TransferSagaStateChanged"
+    })
+    private String messageType;
+
+    private Object message;
+    private byte[] json;
+    private byte[] binary;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        message = MESSAGES.get(messageType);
+        writer = objectMapper.writerFor(message.getClass());
+        reader = objectMapper.readerFor(message.getClass());
+        json = writer.writeValueAsBytes(message);
+        binary = SagaBinaryCodec.encode(message);
+        System.out.printf("%n%s: JSON %d byte, binario %d byte%n", messageType, json.length, binary.length);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() throws Exception {
+        return writer.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public Object deserializeJson() throws Exception {
+        return reader.readValue(json);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return SagaBinaryCodec.encode(message);
+    }
+
+    @Benchmark
+    public Object deserializeBinary() {
+        return SagaBinaryCodec.decode(binary, message.getClass());
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.transferservice.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.CheckClubBudgetResponse;
+import com.example.transferservice.service.SagaEventLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Costo del logging per risposta ricevuta, con più thread consumer in parallelo: il dump completo di messaggio,
+ * header, payload e entity su un appender sincrono (come prima) contro {@link SagaEventLog} campionato
+ * all'1% dietro un AsyncAppender. L'output va su uno stream nullo: si misura formattazione e contesa sull'appender.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SagaLoggingBenchmark {
+
+    private static final String PATTERN = "%d %5level [%thread] %logger : %msg %kvp%n";
+    private static final int SAGAS = 1024;
+
+    private final org.slf4j.Logger verboseLog = LoggerFactory.getLogger("benchmark.verbose");
+    private final AtomicInteger sequence = new AtomicInteger();
+    private SagaEventLog sampledEventLog;
+    private SagaEventLog fullEventLog;
+    private TransferSaga[] sagas;
+    private Message<?>[] messages;
+
+    @Setup
+    public void setUp() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        configure(context.getLogger("benchmark.verbose"), nullAppender(context));
+        configure(context.getLogger("transfer.saga.events"), async(context, nullAppender(context)));
+
+        sampledEventLog = new SagaEventLog(0.01);
+        fullEventLog = new SagaEventLog(1.0);
+        sagas = new TransferSaga[SAGAS];
+        messages = new Message<?>[SAGAS];
+        for (int i = 0; i < SAGAS; i++) {
+            String sagaId = UUID.randomUUID().toString();
+            sagas[i] = TransferSaga.builder()
+                    .id((long) i)
+                    .sagaId(sagaId)
+                    .playerId((long) i)
+                    .fromClubId(2L)
+                    .toClubId(3L)
+                    .transferFee(new BigDecimal("1000000"))
+                    .currentState(TransferSagaState.CLUB_BUDGET_CHECKED)
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+            messages[i] = MessageBuilder.withPayload(new CheckClubBudgetResponse(sagaId, 3L, true, null))
+                    .setHeader("kafka_receivedTopic", "check-club-budget-response")
+                    .setHeader("kafka_receivedPartitionId", i % 12)
+                    .setHeader("kafka_offset", (long) i)
+                    .build();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).reset();
+    }
+
+    @Benchmark
+    public void verboseLogging() {
+        int i = Math.floorMod(sequence.getAndIncrement(), SAGAS);
+        verboseLog.info("Raw message received: {}", messages[i]);
+        verboseLog.info("Headers: {}", messages[i].getHeaders());
+        verboseLog.info("Payload: {}", messages[i].getPayload());
+        verboseLog.info("Budget club verificato per il saga: {}", sagas[i]);
+    }
+
+    @Benchmark
+    public void sampledEventLog() {
+        int i = Math.floorMod(sequence.getAndIncrement(), SAGAS);
+        sampledEventLog.received("checkClubBudgetResponse-in-0", sagas[i].getSagaId(), messages[i]);
+        sampledEventLog.step(sagas[i], "clubBudgetChecked");
+    }
+
+    @Benchmark
+    public void fullEventLog() {
+        int i = Math.floorMod(sequence.getAndIncrement(), SAGAS);
+        fullEventLog.received("checkClubBudgetResponse-in-0", sagas[i].getSagaId(), messages[i]);
+        fullEventLog.step(sagas[i], "clubBudgetChecked");
+    }
+
+    private static void configure(Logger logger, Appender<ILoggingEvent> appender) {
+        logger.detachAndStopAllAppenders();
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+    }
+
+    private static OutputStreamAppender<ILoggingEvent> nullAppender(LoggerContext context) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        return appender;
+    }
+
+    private static AsyncAppender async(LoggerContext context, Appender<ILoggingEvent> delegate) {
+        AsyncAppender appender = new AsyncAppender();
+        appender.setContext(context);
+        appender.setQueueSize(8192);
+        appender.setDiscardingThreshold(1638);
+        appender.setNeverBlock(true);
+        appender.addAppender(delegate);
+        appender.start();
+        return appender;
+    }
+}
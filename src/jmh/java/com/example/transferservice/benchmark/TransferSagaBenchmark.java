@@ -0,0 +1,164 @@
+package com.example.transferservice.benchmark;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.CheckClubBudgetResponse;
+import com.example.transferservice.messages.CheckPlayerAvailabilityResponse;
+import com.example.transferservice.messages.UpdateClubBudgetResponse;
+import com.example.transferservice.messages.UpdatePlayerClubResponse;
+import com.example.transferservice.repository.TransferSagaRepository;
+import com.example.transferservice.service.ClubBudgetLedger;
+import com.example.transferservice.service.ProcessedReplyStore;
+import com.example.transferservice.service.SagaEventLog;
+import com.example.transferservice.service.SagaCommandPublisher;
+import com.example.transferservice.service.SagaMessageKey;
+import com.example.transferservice.service.TransferSagaCache;
+import com.example.transferservice.service.TransferSagaManager;
+import com.example.transferservice.service.TransferReservations;
+import com.example.transferservice.service.TransferSagaMetrics;
+import com.example.transferservice.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orchestrazione del saga senza Spring, database e broker: avvio del trasferimento e ciascun
+ * gestore di risposta sul percorso di successo. I comandi vengono comunque serializzati in JSON
+ * dal SagaCommandPublisher, come in produzione.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransferSagaBenchmark {
+
+    private final Map<String, TransferSaga> store = new HashMap<>();
+
+    private TransferService transferService;
+    private TransferSagaManager transferSagaManager;
+
+    private TransferSaga saga;
+    private long nextPlayerId = 1;
+    private CheckClubBudgetResponse checkClubBudgetResponse;
+    private CheckPlayerAvailabilityResponse checkPlayerAvailabilityResponse;
+    private UpdatePlayerClubResponse updatePlayerClubResponse;
+    private UpdateClubBudgetResponse updateClubBudgetResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TransferSagaRepository transferSagaRepository = InMemoryRepositories.transferSagaRepository(store);
+        // Stessi converter JSON dei binding; il formato binario si prova in MessageSerializationBenchmark
+        SagaCommandPublisher sagaCommandPublisher = new SagaCommandPublisher(InMemoryRepositories.outboxMessageRepository(),
+                new CompositeMessageConverter(List.of(new MappingJackson2MessageConverter())), new BindingServiceProperties());
+        ReflectionTestUtils.setField(sagaCommandPublisher, "messageKey", SagaMessageKey.SAGA_ID);
+        // Senza eventi pubblicati la cache non invia mai notifiche: lo StreamBridge non serve
+        TransferSagaCache transferSagaCache = new TransferSagaCache(transferSagaRepository, null,
+                meterRegistry, 100_000, Duration.ofSeconds(30), Duration.ofMinutes(10), false);
+
+        // TTL zero: ogni invocazione ripete la stessa risposta, che altrimenti verrebbe scartata come duplicato
+        ProcessedReplyStore processedReplyStore = new ProcessedReplyStore(meterRegistry, 100_000, Duration.ZERO);
+        transferSagaManager = new TransferSagaManager(transferSagaRepository, sagaCommandPublisher,
+                transferSagaCache, event -> { }, new TransferSagaMetrics(meterRegistry, transferSagaRepository),
+                processedReplyStore, new ClubBudgetLedger(meterRegistry, false, BigDecimal.ONE), new SagaEventLog(0.0));
+        ReflectionTestUtils.setField(transferSagaManager, "stepTimeout", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(transferSagaManager, "maxAttempts", 3);
+        transferService = new TransferService(transferSagaRepository, transferSagaManager,
+                transferSagaCache, event -> { }, new TransferReservations(meterRegistry, 100_000, Duration.ofMinutes(30)));
+
+        String sagaId = UUID.randomUUID().toString();
+        saga = TransferSaga.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.STARTED)
+                .build();
+
+        checkClubBudgetResponse = CheckClubBudgetResponse.builder()
+                .sagaId(sagaId)
+                .clubId(2L)
+                .budgetAvailable(true)
+                .build();
+        checkPlayerAvailabilityResponse = CheckPlayerAvailabilityResponse.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .playerAvailable(true)
+                .build();
+        updatePlayerClubResponse = UpdatePlayerClubResponse.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .updated(true)
+                .build();
+        updateClubBudgetResponse = UpdateClubBudgetResponse.builder()
+                .sagaId(sagaId)
+                .clubId(2L)
+                .updated(true)
+                .build();
+    }
+
+    // initiateTransfer aggiunge un saga a ogni invocazione: lo store riparte vuoto a ogni iterazione
+    @Setup(Level.Iteration)
+    public void resetStore() {
+        store.clear();
+        store.put(saga.getSagaId(), saga);
+    }
+
+    @Benchmark
+    public String initiateTransfer() {
+        // Un giocatore diverso a ogni invocazione: la prenotazione riesce sempre
+        return transferService.initiateTransfer(nextPlayerId++, 2L, 3L, saga.getTransferFee());
+    }
+
+    @Benchmark
+    public TransferSaga handleCheckClubBudgetResponse() {
+        saga.setCurrentState(TransferSagaState.STARTED);
+        transferSagaManager.handleCheckClubBudgetResponse(checkClubBudgetResponse);
+        return saga;
+    }
+
+    @Benchmark
+    public TransferSaga handleCheckPlayerAvailabilityResponse() {
+        saga.setCurrentState(TransferSagaState.CLUB_BUDGET_CHECKED);
+        transferSagaManager.handleCheckPlayerAvailabilityResponse(checkPlayerAvailabilityResponse);
+        return saga;
+    }
+
+    @Benchmark
+    public TransferSaga handleUpdatePlayerClubResponse() {
+        saga.setCurrentState(TransferSagaState.PLAYER_AVAILABILITY_CHECKED);
+        transferSagaManager.handleUpdatePlayerClubResponse(updatePlayerClubResponse);
+        return saga;
+    }
+
+    @Benchmark
+    public TransferSaga handleUpdateClubBudgetResponse() {
+        saga.setCurrentState(TransferSagaState.PLAYER_CLUB_UPDATED);
+        transferSagaManager.handleUpdateClubBudgetResponse(updateClubBudgetResponse);
+        return saga;
+    }
+}
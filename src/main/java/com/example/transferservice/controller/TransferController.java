@@ -1,16 +1,41 @@
 package com.example.transferservice.controller;
 
+import com.example.transferservice.dto.TransferSearchCriteria;
+import com.example.transferservice.dto.TransferSearchCursor;
+import com.example.transferservice.dto.TransferSearchResponse;
 import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.service.TransferConflictException;
+import com.example.transferservice.service.TransferReservations;
 import com.example.transferservice.service.TransferService;
+import com.example.transferservice.service.TransferStatusSubscriptions;
+import com.example.transferservice.service.TransferStatusSubscriptions.Subscription;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/transfers")
@@ -19,17 +44,80 @@ import org.springframework.web.bind.annotation.RestController;
 public class TransferController {
 
     private final TransferService transferService;
+    private final TransferStatusSubscriptions transferStatusSubscriptions;
+    private final TransferReservations transferReservations;
+    private final TransferExecutor transferExecutor;
+
+    @Value("${transfer.batch.max-size:5000}")
+    private int batchMaxSize;
+
+    @Value("${transfer.search.max-limit:200}")
+    private int searchMaxLimit;
 
+    @Value("${transfer.status-stream.timeout:10m}")
+    private Duration statusStreamTimeout;
+
+    /**
+     * Insert del saga e dei comandi in outbox sul pool transferExecutor: il thread della richiesta torna subito
+     * al connector. Il 202 parte dopo il commit, quando il trasferimento è durevole e il relay consegnerà
+     * i comandi; con pool e coda pieni la risposta è 503.
+     */
     @PostMapping
-    public ResponseEntity<TransferResponse> initiateTransfer(@RequestBody TransferRequest request) {
+    public CompletableFuture<ResponseEntity<TransferResponse>> initiateTransfer(@RequestBody TransferRequest request) {
         log.info("Ricevuta richiesta di trasferimento: {}", request);
-        String sagaId = transferService.initiateTransfer(
-                request.getPlayerId(),
-                request.getFromClubId(),
-                request.getToClubId(),
-                request.getTransferFee()
-        );
-        return ResponseEntity.accepted().body(new TransferResponse(sagaId, "Trasferimento avviato"));
+        // Giocatore già in trasferimento su questa istanza: risposta immediata, senza transazione
+        Optional<String> activeSagaId = transferReservations.activeSagaOf(request.getPlayerId());
+        if (activeSagaId.isPresent()) {
+            return CompletableFuture.completedFuture(
+                    conflict(new TransferConflictException(request.getPlayerId(), activeSagaId.get())));
+        }
+        return CompletableFuture.supplyAsync(() -> transferService.initiateTransfer(
+                        request.getPlayerId(),
+                        request.getFromClubId(),
+                        request.getToClubId(),
+                        request.getTransferFee()), transferExecutor::execute)
+                .thenApply(sagaId -> ResponseEntity.accepted().body(new TransferResponse(sagaId, "Trasferimento avviato")));
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<String>>> initiateTransfers(@RequestBody List<TransferRequest> requests) {
+        log.info("Ricevuta richiesta di trasferimento in blocco: {} trasferimenti", requests.size());
+        if (requests.isEmpty() || requests.size() > batchMaxSize) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return CompletableFuture.supplyAsync(() -> transferService.initiateTransfers(requests), transferExecutor::execute)
+                .thenApply(sagaIds -> ResponseEntity.accepted().body(sagaIds));
+    }
+
+    @GetMapping
+    public ResponseEntity<TransferSearchResponse> searchTransfers(
+            @RequestParam(required = false) Long playerId,
+            @RequestParam(required = false) Long fromClubId,
+            @RequestParam(required = false) Long toClubId,
+            @RequestParam(required = false) TransferSagaState state,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > searchMaxLimit) {
+            return ResponseEntity.badRequest().build();
+        }
+        TransferSearchCursor after;
+        try {
+            after = cursor == null ? null : TransferSearchCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cursore di ricerca non valido: {}", cursor);
+            return ResponseEntity.badRequest().build();
+        }
+        TransferSearchCriteria criteria = TransferSearchCriteria.builder()
+                .playerId(playerId)
+                .fromClubId(fromClubId)
+                .toClubId(toClubId)
+                .state(state)
+                .createdFrom(createdFrom)
+                .createdTo(createdTo)
+                .build();
+        return ResponseEntity.ok(transferService.searchTransfers(criteria, after, limit));
     }
 
     @GetMapping("/{sagaId}")
@@ -37,5 +125,70 @@ public class TransferController {
         log.info("Ricevuta richiesta di stato per il trasferimento: {}", sagaId);
         TransferStatusResponse status = transferService.getTransferStatus(sagaId);
         return ResponseEntity.ok(status);
-    }   
+    }
+
+    /**
+     * Stream SSE dello stato: un evento "status" subito e uno ad ogni cambio di stato, chiuso su COMPLETED/FAILED.
+     * La richiesta resta in modalità asincrona senza occupare un thread; allo scadere del timeout lo stream
+     * viene chiuso e il client (EventSource) si ricollega ricevendo di nuovo lo stato corrente.
+     */
+    @GetMapping(path = "/{sagaId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTransferStatus(@PathVariable String sagaId) {
+        log.info("Ricevuta richiesta di stream dello stato per il trasferimento: {}", sagaId);
+        // Saga inesistente: stesso errore di GET /transfers/{sagaId}
+        transferService.getTransferStatus(sagaId);
+
+        SseEmitter emitter = new SseEmitter(statusStreamTimeout.toMillis());
+        Optional<Subscription> subscription = transferStatusSubscriptions.subscribe(sagaId, new SseSubscriber(emitter));
+        if (subscription.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+        emitter.onCompletion(subscription.get()::cancel);
+        emitter.onError(e -> subscription.get().cancel());
+        emitter.onTimeout(emitter::complete);
+        return ResponseEntity.ok(emitter);
+    }
+
+    @ExceptionHandler(TransferConflictException.class)
+    public ResponseEntity<TransferResponse> handleTransferConflict(TransferConflictException e) {
+        return conflict(e);
+    }
+
+    // Pool transferExecutor e coda pieni: il chiamante riprova più tardi
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> handleExecutorSaturated(TaskRejectedException e) {
+        log.warn("Richiesta rifiutata, pool di creazione dei saga saturo: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    // Pool di connessioni esaurito: il chiamante riprova più tardi
+    @ExceptionHandler(CannotCreateTransactionException.class)
+    public ResponseEntity<Void> handleConnectionPoolExhausted(CannotCreateTransactionException e) {
+        log.warn("Nessuna connessione disponibile: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    private ResponseEntity<TransferResponse> conflict(TransferConflictException e) {
+        log.warn("Trasferimento rifiutato: {} (saga attivo: {})", e.getMessage(), e.getActiveSagaId());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new TransferResponse(e.getActiveSagaId(), e.getMessage()));
+    }
+
+    private record SseSubscriber(SseEmitter emitter) implements TransferStatusSubscriptions.Subscriber {
+
+        @Override
+        public void send(TransferStatusResponse status) throws IOException {
+            emitter.send(SseEmitter.event().name("status").data(status, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void complete() {
+            emitter.complete();
+        }
+    }
 }
@@ -0,0 +1,37 @@
+package com.example.transferservice.controller;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Pool dedicato alla creazione dei saga richiesta via HTTP. Volutamente non è un {@link java.util.concurrent.Executor}:
+ * un bean di quel tipo farebbe saltare l'applicationTaskExecutor di Boot, e async MVC, @Async e i thread virtuali
+ * finirebbero su questo pool.
+ */
+public class TransferExecutor implements DisposableBean {
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    public TransferExecutor(int poolSize, int queueCapacity) {
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("transfer-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+    }
+
+    /**
+     * @throws TaskRejectedException con pool e coda pieni
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.transferservice.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Pool dedicato alla creazione dei saga richiesta via HTTP. I thread sono tanti quante le connessioni
+ * che si vogliono dedicare agli insert; oltre la coda le richieste vengono rifiutate subito (503)
+ * invece di accumularsi sui thread del connector. L'applicationTaskExecutor di Boot resta quello predefinito.
+ */
+@Configuration
+public class TransferExecutorConfig {
+
+    @Bean
+    public TransferExecutor transferExecutor(@Value("${transfer.async.pool-size:10}") int poolSize,
+                                             @Value("${transfer.async.queue-capacity:500}") int queueCapacity) {
+        return new TransferExecutor(poolSize, queueCapacity);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.transferservice.dto;
+
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Proiezione di un saga per la ricerca: letta con una constructor expression, senza caricare l'entità.
+ * L'id serve solo al cursore di paginazione e non viene esposto.
+ */
+@Data
+public class TransferSagaSummary {
+    @JsonIgnore
+    private Long id;
+    private String sagaId;
+    private Long playerId;
+    private Long fromClubId;
+    private Long toClubId;
+    private BigDecimal transferFee;
+    private String state;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public TransferSagaSummary(Long id, String sagaId, Long playerId, Long fromClubId, Long toClubId,
+                               BigDecimal transferFee, TransferSagaState state, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.sagaId = sagaId;
+        this.playerId = playerId;
+        this.fromClubId = fromClubId;
+        this.toClubId = toClubId;
+        this.transferFee = transferFee;
+        this.state = state.name();
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+}
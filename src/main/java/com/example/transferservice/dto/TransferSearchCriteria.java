@@ -0,0 +1,21 @@
+package com.example.transferservice.dto;
+
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filtri della ricerca dei saga; quelli null non vengono applicati. createdFrom è incluso, createdTo escluso.
+ */
+@Data
+@Builder
+public class TransferSearchCriteria {
+    private Long playerId;
+    private Long fromClubId;
+    private Long toClubId;
+    private TransferSagaState state;
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+}
@@ -0,0 +1,32 @@
+package com.example.transferservice.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posizione nella paginazione keyset: l'ultima riga restituita, nell'ordine (createdAt DESC, id DESC).
+ * Viaggia verso il client come stringa opaca.
+ */
+public record TransferSearchCursor(LocalDateTime createdAt, long id) {
+
+    public static TransferSearchCursor after(TransferSagaSummary summary) {
+        return new TransferSearchCursor(summary.getCreatedAt(), summary.getId());
+    }
+
+    public String encode() {
+        String value = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransferSearchCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            return new TransferSearchCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursore non valido: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.transferservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Pagina di risultati della ricerca; nextCursor è null sull'ultima pagina.
+ */
+@Data
+@AllArgsConstructor
+public class TransferSearchResponse {
+    private List<TransferSagaSummary> items;
+    private String nextCursor;
+}
@@ -1,5 +1,8 @@
 package com.example.transferservice.dto;
 
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import java.math.BigDecimal;
@@ -10,6 +13,7 @@ import java.time.LocalDateTime;
  */
 @Data
 @Builder
+@AllArgsConstructor
 public class TransferStatusResponse {
     private String sagaId;
     private Long playerId;
@@ -20,4 +24,36 @@ public class TransferStatusResponse {
     private String errorMessage;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
-}
\ No newline at end of file
+    // Versione (@Version) del saga da cui è preso lo stato: ordina gli aggiornamenti, non fa parte della risposta
+    @JsonIgnore
+    private long version;
+
+    // Constructor expression della query di stato: la proiezione viene letta senza caricare l'entità
+    public TransferStatusResponse(String sagaId, Long playerId, Long fromClubId, Long toClubId, BigDecimal transferFee,
+                                  TransferSagaState state, String errorMessage, LocalDateTime createdAt, LocalDateTime updatedAt,
+                                  long version) {
+        this(sagaId, playerId, fromClubId, toClubId, transferFee, state.name(), errorMessage, createdAt, updatedAt, version);
+    }
+
+    @JsonIgnore
+    public boolean isTerminal() {
+        return TransferSagaState.COMPLETED.name().equals(state) || TransferSagaState.FAILED.name().equals(state);
+    }
+
+    /**
+     * True se questo stato è successivo a previous: versione maggiore o, a pari versione (stati intermedi
+     * della stessa transazione), updatedAt successivo. Uno stato concluso non viene mai superato.
+     */
+    public boolean isNewerThan(TransferStatusResponse previous) {
+        if (previous == null) {
+            return true;
+        }
+        if (previous.isTerminal() || isTerminal()) {
+            return !previous.isTerminal();
+        }
+        if (version != previous.version) {
+            return version > previous.version;
+        }
+        return updatedAt != null && (previous.updatedAt == null || updatedAt.isAfter(previous.updatedAt));
+    }
+}
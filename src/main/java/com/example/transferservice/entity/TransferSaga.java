@@ -1,10 +1,12 @@
 package com.example.transferservice.entity;
 
+import com.example.transferservice.saga.SagaInstance;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.NaturalId;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -12,15 +14,24 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "transfer_saga")
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
-public class TransferSaga {
+public class TransferSaga implements SagaInstance<TransferSaga.TransferSagaState> {
 
+    // Sequenza con optimizer pooled: un nextval ogni 50 id, così gli insert possono andare in batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfer_saga_seq")
+    @SequenceGenerator(name = "transfer_saga_seq", sequenceName = "transfer_saga_seq", allocationSize = 50)
     private Long id;
+
+    // Le transizioni concorrenti sullo stesso saga vengono serializzate dal controllo di versione
+    @Version
+    private long version;
     
+    @NaturalId
+    @Convert(converter = UuidStringConverter.class)
+    @Column(nullable = false, updatable = false)
     private String sagaId;
     private Long playerId;
     private Long fromClubId;
@@ -33,6 +44,17 @@ public class TransferSaga {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private String errorMessage;
+
+    // Esiti positivi ricevuti in CHECKS_PENDING (verifiche in parallelo)
+    @Column(nullable = false)
+    private boolean clubBudgetChecked;
+    @Column(nullable = false)
+    private boolean playerAvailabilityChecked;
+
+    // Scadenza del passo corrente (null per i saga conclusi) e nuovi invii già fatti per questo passo
+    private LocalDateTime deadline;
+    @Column(nullable = false)
+    private int attempts;
     
     @PrePersist
     public void prePersist() {
@@ -45,8 +67,13 @@ public class TransferSaga {
         updatedAt = LocalDateTime.now();
     }
     
+    public boolean isTerminal() {
+        return currentState == TransferSagaState.COMPLETED || currentState == TransferSagaState.FAILED;
+    }
+
     public enum TransferSagaState {
         STARTED,
+        CHECKS_PENDING,
         CLUB_BUDGET_CHECKED,
         PLAYER_AVAILABILITY_CHECKED,
         PLAYER_CLUB_UPDATED,
@@ -0,0 +1,69 @@
+package com.example.transferservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Saga concluso spostato nell'archivio da SagaArchiver. Le righe vengono scritte solo dalla query
+ * di spostamento in blocco e non cambiano più: entità e risoluzione della natural id stanno nella
+ * cache di secondo livello in sola lettura (regioni in hibernate-jcache.conf).
+ */
+@Entity
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "transfer-saga-archive")
+@NaturalIdCache(region = "transfer-saga-archive-natural-id")
+@Table(name = "transfer_saga_archive")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferSagaArchive {
+
+    // Stesso id della riga di transfer_saga da cui proviene
+    @Id
+    private Long id;
+
+    @NaturalId
+    @Convert(converter = UuidStringConverter.class)
+    @Column(nullable = false, updatable = false)
+    private String sagaId;
+    private Long playerId;
+    private Long fromClubId;
+    private Long toClubId;
+    private BigDecimal transferFee;
+
+    @Enumerated(EnumType.STRING)
+    private TransferSaga.TransferSagaState currentState;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private String errorMessage;
+    private LocalDateTime archivedAt;
+
+    public TransferSaga toTransferSaga() {
+        return TransferSaga.builder()
+                .id(id)
+                .sagaId(sagaId)
+                .playerId(playerId)
+                .fromClubId(fromClubId)
+                .toClubId(toClubId)
+                .transferFee(transferFee)
+                .currentState(currentState)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .errorMessage(errorMessage)
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.transferservice.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Budget disponibile di un club, pubblicato dal servizio club a ogni variazione sul topic compattato
+ * club-budget-snapshot (chiave: clubId). Gli addebiti dei trasferimenti confermati sono già sottratti.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClubBudgetSnapshot {
+    private Long clubId;
+    private BigDecimal availableBudget;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,16 @@
+package com.example.transferservice.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferSagaStateChanged {
+    private String sagaId;
+    private String state;
+    private String sourceInstanceId;
+}
@@ -0,0 +1,307 @@
+package com.example.transferservice.messages.codec;
+
+import com.example.transferservice.messages.*;
+import org.springframework.util.MimeType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Formato binario a layout fisso per i DTO del package messages, alternativo al JSON.
+ * <p>
+ * Ogni messaggio inizia con versione e tipo (un byte ciascuno), seguiti dai campi nell'ordine
+ * di dichiarazione: sagaId come 16 byte quando è un UUID, Long e scale dei BigDecimal come varint zigzag,
+ * stringhe e valori non scalati come varint di lunghezza + byte; un byte iniziale distingue i null.
+ * Aggiungere un campo richiede una nuova versione del formato.
+ */
+public final class SagaBinaryCodec {
+
+    public static final MimeType CONTENT_TYPE = MimeType.valueOf("application/x-transfer-saga");
+
+    private static final byte VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte UUID_SAGA_ID = 1;
+    private static final byte STRING_SAGA_ID = 2;
+
+    private record Format<T>(byte tag, Class<T> type, BiConsumer<Writer, T> writer, Function<Reader, T> reader) {
+
+        void write(Writer out, Object message) {
+            writer.accept(out, type.cast(message));
+        }
+    }
+
+    // I tag sono parte del formato: non riordinare, aggiungere in coda
+    private static final List<Format<?>> FORMATS = List.of(
+            new Format<>((byte) 1, CheckClubBudgetRequest.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).int64(m.getClubId()).decimal(m.getTransferFee()),
+                    in -> new CheckClubBudgetRequest(in.sagaId(), in.int64(), in.decimal())),
+            new Format<>((byte) 2, CheckClubBudgetResponse.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).int64(m.getClubId()).bool(m.isBudgetAvailable()).string(m.getErrorMessage()),
+                    in -> new CheckClubBudgetResponse(in.sagaId(), in.int64(), in.bool(), in.string())),
+            new Format<>((byte) 3, CheckPlayerAvailabilityRequest.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).int64(m.getPlayerId()).int64(m.getToClubId()),
+                    in -> new CheckPlayerAvailabilityRequest(in.sagaId(), in.int64(), in.int64())),
+            new Format<>((byte) 4, CheckPlayerAvailabilityResponse.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).int64(m.getPlayerId()).bool(m.isPlayerAvailable()).string(m.getErrorMessage()),
+                    in -> new CheckPlayerAvailabilityResponse(in.sagaId(), in.int64(), in.bool(), in.string())),
+            new Format<>((byte) 5, UpdatePlayerClubRequest.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).int64(m.getPlayerId()).int64(m.getNewClubId()),
+                    in -> new UpdatePlayerClubRequest(in.sagaId(), in.int64(), in.int64())),
+            new Format<>((byte) 6, UpdatePlayerClubResponse.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).int64(m.getPlayerId()).bool(m.isUpdated()).string(m.getErrorMessage()),
+                    in -> new UpdatePlayerClubResponse(in.sagaId(), in.int64(), in.bool(), in.string())),
+            new Format<>((byte) 7, UpdateClubBudgetRequest.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).int64(m.getClubId()).decimal(m.getTransferFee()),
+                    in -> new UpdateClubBudgetRequest(in.sagaId(), in.int64(), in.decimal())),
+            new Format<>((byte) 8, UpdateClubBudgetResponse.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).int64(m.getClubId()).bool(m.isUpdated()).string(m.getErrorMessage()),
+                    in -> new UpdateClubBudgetResponse(in.sagaId(), in.int64(), in.bool(), in.string())),
+            new Format<>((byte) 9, TransferSagaStateChanged.class,
+                    (out, m) -> out.sagaId(m.getSagaId()).string(m.getState()).string(m.getSourceInstanceId()),
+                    in -> new TransferSagaStateChanged(in.sagaId(), in.string(), in.string())));
+
+    private static final Map<Class<?>, Format<?>> BY_TYPE = new HashMap<>();
+    private static final Format<?>[] BY_TAG = new Format<?>[FORMATS.size() + 1];
+
+    static {
+        for (Format<?> format : FORMATS) {
+            BY_TYPE.put(format.type(), format);
+            BY_TAG[format.tag()] = format;
+        }
+    }
+
+    private SagaBinaryCodec() {
+    }
+
+    public static boolean supports(Class<?> type) {
+        return BY_TYPE.containsKey(type);
+    }
+
+    public static byte[] encode(Object message) {
+        Format<?> format = BY_TYPE.get(message.getClass());
+        if (format == null) {
+            throw new IllegalArgumentException("Tipo di messaggio non supportato: " + message.getClass().getName());
+        }
+        Writer out = new Writer();
+        out.int8(VERSION).int8(format.tag());
+        format.write(out, message);
+        return out.toByteArray();
+    }
+
+    public static <T> T decode(byte[] payload, Class<T> type) {
+        Reader in = new Reader(payload);
+        byte version = in.int8();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Versione del formato non supportata: " + version);
+        }
+        byte tag = in.int8();
+        Format<?> format = tag > 0 && tag < BY_TAG.length ? BY_TAG[tag] : null;
+        if (format == null || format.type() != type) {
+            throw new IllegalArgumentException("Il payload (tipo " + tag + ") non contiene un " + type.getSimpleName());
+        }
+        T message = type.cast(format.reader().apply(in));
+        if (in.remaining() != 0) {
+            throw new IllegalArgumentException("Byte in eccesso nel payload di " + type.getSimpleName());
+        }
+        return message;
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer = new byte[64];
+        private int position;
+
+        Writer int8(byte value) {
+            ensureCapacity(1);
+            buffer[position++] = value;
+            return this;
+        }
+
+        Writer bool(boolean value) {
+            return int8(value ? (byte) 1 : 0);
+        }
+
+        Writer int64(Long value) {
+            if (value == null) {
+                return int8(NULL);
+            }
+            return int8((byte) 1).varint((value << 1) ^ (value >> 63));
+        }
+
+        Writer string(String value) {
+            if (value == null) {
+                return int8(NULL);
+            }
+            return int8((byte) 1).bytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Writer sagaId(String sagaId) {
+            if (sagaId == null) {
+                return int8(NULL);
+            }
+            UUID uuid = parseUuid(sagaId);
+            if (uuid == null) {
+                return int8(STRING_SAGA_ID).bytes(sagaId.getBytes(StandardCharsets.UTF_8));
+            }
+            int8(UUID_SAGA_ID);
+            ensureCapacity(16);
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+            return this;
+        }
+
+        Writer decimal(BigDecimal value) {
+            if (value == null) {
+                return int8(NULL);
+            }
+            int scale = value.scale();
+            return int8((byte) 1).varint((scale << 1) ^ (scale >> 31)).bytes(value.unscaledValue().toByteArray());
+        }
+
+        private Writer bytes(byte[] value) {
+            varint(value.length);
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+            return this;
+        }
+
+        private Writer varint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+            return this;
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void ensureCapacity(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte int8() {
+            if (position >= buffer.length) {
+                throw new IllegalArgumentException("Payload troncato");
+            }
+            return buffer[position++];
+        }
+
+        boolean bool() {
+            return int8() != 0;
+        }
+
+        Long int64() {
+            if (int8() == NULL) {
+                return null;
+            }
+            long zigzag = varint();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        String string() {
+            if (int8() == NULL) {
+                return null;
+            }
+            return new String(bytes(), StandardCharsets.UTF_8);
+        }
+
+        String sagaId() {
+            byte kind = int8();
+            if (kind == NULL) {
+                return null;
+            }
+            if (kind == STRING_SAGA_ID) {
+                return new String(bytes(), StandardCharsets.UTF_8);
+            }
+            return new UUID(readLong(), readLong()).toString();
+        }
+
+        BigDecimal decimal() {
+            if (int8() == NULL) {
+                return null;
+            }
+            int zigzag = (int) varint();
+            int scale = (zigzag >>> 1) ^ -(zigzag & 1);
+            return new BigDecimal(new BigInteger(bytes()), scale);
+        }
+
+        int remaining() {
+            return buffer.length - position;
+        }
+
+        private byte[] bytes() {
+            int length = (int) varint();
+            if (length < 0 || length > remaining()) {
+                throw new IllegalArgumentException("Payload troncato");
+            }
+            byte[] value = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return value;
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = int8();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint non valido");
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (int8() & 0xFF);
+            }
+            return value;
+        }
+    }
+
+    // Solo la forma canonica (minuscola, 36 caratteri) viaggia come UUID: la decodifica deve restituire la stessa stringa
+    private static UUID parseUuid(String value) {
+        if (value.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,12 +1,62 @@
 package com.example.transferservice.repository;
 
 import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TransferSagaRepository extends JpaRepository<TransferSaga, Long> {
-    Optional<TransferSaga> findBySagaId(String sagaId);
+public interface TransferSagaRepository extends JpaRepository<TransferSaga, Long>, TransferSagaRepositoryCustom {
+
+    @Query("select s.currentState as state, count(s) as count from TransferSaga s "
+            + "where s.currentState not in ('COMPLETED', 'FAILED') group by s.currentState")
+    List<StateCount> countActiveByState();
+
+    // Stati attivi scritti come letterali: il planner deve poter dimostrare il predicato dell'indice parziale
+    // ix_transfer_saga_state_deadline anche con piano generico. Lettura senza lock in ordine (deadline, id):
+    // lo sweeper avanza con il cursore, così i saga falliti o bloccati non ritornano in testa nello stesso giro
+    @Query(value = "SELECT * FROM transfer_saga "
+            + "WHERE current_state IN ('STARTED', 'CHECKS_PENDING', 'CLUB_BUDGET_CHECKED', "
+            + "'PLAYER_AVAILABILITY_CHECKED', 'PLAYER_CLUB_UPDATED', 'CLUB_BUDGET_UPDATED') "
+            + "AND deadline < :now AND (deadline, id) > (:afterDeadline, :afterId) "
+            + "ORDER BY deadline, id LIMIT :limit", nativeQuery = true)
+    List<TransferSaga> findExpiredAfter(@Param("now") LocalDateTime now, @Param("afterDeadline") LocalDateTime afterDeadline,
+                                        @Param("afterId") long afterId, @Param("limit") int limit);
+
+    // Lock del singolo saga se è ancora scaduto. SKIP LOCKED: un saga già in mano a un altro sweeper
+    // o a una risposta viene saltato invece di attendere
+    @Query(value = "SELECT * FROM transfer_saga WHERE id = :id "
+            + "AND current_state IN ('STARTED', 'CHECKS_PENDING', 'CLUB_BUDGET_CHECKED', "
+            + "'PLAYER_AVAILABILITY_CHECKED', 'PLAYER_CLUB_UPDATED', 'CLUB_BUDGET_UPDATED') "
+            + "AND deadline < :now FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<TransferSaga> lockExpired(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Sposta nell'archivio i saga conclusi creati prima di cutoff, con un solo statement (DELETE ... RETURNING
+    // dentro un INSERT). La scansione parte dai più vecchi su ix_transfer_saga_created; SKIP LOCKED lascia stare
+    // le righe bloccate da altre transazioni, che verranno riprese al giro successivo
+    @Modifying
+    @Query(value = "WITH moved AS ("
+            + "DELETE FROM transfer_saga WHERE id IN ("
+            + "SELECT id FROM transfer_saga WHERE created_at < :cutoff AND current_state IN ('COMPLETED', 'FAILED') "
+            + "ORDER BY created_at, id LIMIT :limit FOR UPDATE SKIP LOCKED) "
+            + "RETURNING id, saga_id, player_id, from_club_id, to_club_id, transfer_fee, current_state, "
+            + "created_at, updated_at, error_message) "
+            + "INSERT INTO transfer_saga_archive (id, saga_id, player_id, from_club_id, to_club_id, transfer_fee, "
+            + "current_state, created_at, updated_at, error_message, archived_at) "
+            + "SELECT id, saga_id, player_id, from_club_id, to_club_id, transfer_fee, current_state, "
+            + "created_at, updated_at, error_message, now() FROM moved", nativeQuery = true)
+    int archiveTerminalCreatedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    interface StateCount {
+        TransferSagaState getState();
+
+        long getCount();
+    }
 }
@@ -0,0 +1,57 @@
+package com.example.transferservice.repository;
+
+import com.example.transferservice.dto.TransferSagaSummary;
+import com.example.transferservice.dto.TransferSearchCriteria;
+import com.example.transferservice.dto.TransferSearchCursor;
+import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.entity.TransferSaga;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface TransferSagaRepositoryCustom {
+
+    /**
+     * Risolve il saga tramite la natural id sagaId (indice univoco su saga_id). Chiamato fuori da una
+     * transazione ne apre una propria: la Session ottenuta con unwrap deve restare aperta per la lettura.
+     */
+    @Transactional
+    Optional<TransferSaga> findBySagaId(String sagaId);
+
+    /**
+     * Cerca il saga nell'archivio dei saga conclusi; la copia restituita non è gestita dal persistence context.
+     * Le righe archiviate non cambiano più: la lettura va sulla replica, se configurata, e passa dalla cache
+     * di secondo livello.
+     */
+    @Transactional(readOnly = true)
+    Optional<TransferSaga> findArchivedBySagaId(String sagaId);
+
+    /**
+     * Stato del saga letto come proiezione DTO, senza entità nel persistence context né dirty checking.
+     * La transazione read-only viene instradata sulla replica, se configurata (ReadReplicaDataSourceConfig).
+     */
+    @Transactional(readOnly = true)
+    Optional<TransferStatusResponse> findStatusBySagaId(String sagaId);
+
+    /**
+     * Come findStatusBySagaId, ma sempre sul primario: per i saga attivi la replica può essere in ritardo.
+     * La transazione è sempre nuova e non read-only: dentro una transazione read-only del chiamante un semplice
+     * join ne erediterebbe la connessione, e quindi la replica.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    Optional<TransferStatusResponse> findPrimaryStatusBySagaId(String sagaId);
+
+    /**
+     * Carica in blocco i saga per sagaId con un'unica query IN; gli id sconosciuti vengono ignorati.
+     */
+    List<TransferSaga> findAllBySagaIdIn(Collection<String> sagaIds);
+
+    /**
+     * Ricerca keyset: al massimo limit proiezioni successive ad after (null per la prima pagina),
+     * ordinate per (createdAt DESC, id DESC). Solo i filtri valorizzati finiscono nella query.
+     */
+    List<TransferSagaSummary> searchSummaries(TransferSearchCriteria criteria, TransferSearchCursor after, int limit);
+}
@@ -0,0 +1,146 @@
+package com.example.transferservice.repository;
+
+import com.example.transferservice.dto.TransferSagaSummary;
+import com.example.transferservice.dto.TransferSearchCriteria;
+import com.example.transferservice.dto.TransferSearchCursor;
+import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSagaArchive;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public class TransferSagaRepositoryCustomImpl implements TransferSagaRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<TransferSaga> findBySagaId(String sagaId) {
+        if (!isUuid(sagaId)) {
+            return Optional.empty();
+        }
+        // La natural id viene risolta prima nel persistence context e poi sull'indice univoco
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(TransferSaga.class)
+                .loadOptional(sagaId);
+    }
+
+    @Override
+    public Optional<TransferSaga> findArchivedBySagaId(String sagaId) {
+        if (!isUuid(sagaId)) {
+            return Optional.empty();
+        }
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(TransferSagaArchive.class)
+                .loadOptional(sagaId)
+                .map(TransferSagaArchive::toTransferSaga);
+    }
+
+    @Override
+    public Optional<TransferStatusResponse> findStatusBySagaId(String sagaId) {
+        return queryStatus(sagaId);
+    }
+
+    @Override
+    public Optional<TransferStatusResponse> findPrimaryStatusBySagaId(String sagaId) {
+        return queryStatus(sagaId);
+    }
+
+    private Optional<TransferStatusResponse> queryStatus(String sagaId) {
+        if (!isUuid(sagaId)) {
+            return Optional.empty();
+        }
+        return entityManager
+                .createQuery("select new com.example.transferservice.dto.TransferStatusResponse("
+                        + "s.sagaId, s.playerId, s.fromClubId, s.toClubId, s.transferFee, s.currentState, "
+                        + "s.errorMessage, s.createdAt, s.updatedAt, s.version) "
+                        + "from TransferSaga s where s.sagaId = :sagaId", TransferStatusResponse.class)
+                .setParameter("sagaId", sagaId)
+                .getResultStream()
+                .findFirst();
+    }
+
+    @Override
+    public List<TransferSaga> findAllBySagaIdIn(Collection<String> sagaIds) {
+        List<String> validSagaIds = sagaIds.stream()
+                .filter(TransferSagaRepositoryCustomImpl::isUuid)
+                .distinct()
+                .toList();
+        if (validSagaIds.isEmpty()) {
+            return List.of();
+        }
+        return entityManager
+                .createQuery("select s from TransferSaga s where s.sagaId in :sagaIds", TransferSaga.class)
+                .setParameter("sagaIds", validSagaIds)
+                .getResultList();
+    }
+
+    @Override
+    public List<TransferSagaSummary> searchSummaries(TransferSearchCriteria criteria, TransferSearchCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransferSagaSummary> query = cb.createQuery(TransferSagaSummary.class);
+        Root<TransferSaga> saga = query.from(TransferSaga.class);
+        Path<LocalDateTime> createdAt = saga.get("createdAt");
+        Path<Long> id = saga.get("id");
+
+        query.select(cb.construct(TransferSagaSummary.class,
+                id, saga.get("sagaId"), saga.get("playerId"), saga.get("fromClubId"), saga.get("toClubId"),
+                saga.get("transferFee"), saga.get("currentState"), createdAt, saga.get("updatedAt")));
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (criteria.getPlayerId() != null) {
+            predicates.add(cb.equal(saga.get("playerId"), criteria.getPlayerId()));
+        }
+        if (criteria.getFromClubId() != null) {
+            predicates.add(cb.equal(saga.get("fromClubId"), criteria.getFromClubId()));
+        }
+        if (criteria.getToClubId() != null) {
+            predicates.add(cb.equal(saga.get("toClubId"), criteria.getToClubId()));
+        }
+        if (criteria.getState() != null) {
+            predicates.add(cb.equal(saga.get("currentState"), criteria.getState()));
+        }
+        if (criteria.getCreatedFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(createdAt, criteria.getCreatedFrom()));
+        }
+        if (criteria.getCreatedTo() != null) {
+            predicates.add(cb.lessThan(createdAt, criteria.getCreatedTo()));
+        }
+        if (after != null) {
+            // created_at <= :c è il limite di range sull'indice; l'OR scarta solo le righe a pari created_at
+            predicates.add(cb.lessThanOrEqualTo(createdAt, after.createdAt()));
+            predicates.add(cb.or(cb.lessThan(createdAt, after.createdAt()), cb.lessThan(id, after.id())));
+        }
+
+        query.where(predicates.toArray(Predicate[]::new))
+                .orderBy(cb.desc(createdAt), cb.desc(id));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private static boolean isUuid(String value) {
+        if (value == null) {
+            return false;
+        }
+        try {
+            UUID.fromString(value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.transferservice.saga;
+
+import java.util.function.Function;
+
+/**
+ * Comando verso un partecipante: binding di uscita e factory del payload a partire dal saga.
+ * La compensazione, se presente, annulla l'effetto del comando quando il saga fallisce dopo che è stato eseguito.
+ */
+public record SagaCommand<T>(String name, String bindingName, Function<T, ?> factory, SagaCommand<T> compensation) {
+
+    public static <T> SagaCommand<T> of(String name, String bindingName, Function<T, ?> factory) {
+        return new SagaCommand<>(name, bindingName, factory, null);
+    }
+
+    public SagaCommand<T> compensatedBy(SagaCommand<T> compensation) {
+        return new SagaCommand<>(name, bindingName, factory, compensation);
+    }
+
+    public Object create(T saga) {
+        return factory.apply(saga);
+    }
+}
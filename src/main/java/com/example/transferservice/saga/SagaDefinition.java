@@ -0,0 +1,309 @@
+package com.example.transferservice.saga;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Tabella delle transizioni di un tipo di saga, costruita una volta sola all'avvio. Per ogni stato dichiara
+ * i comandi in attesa di risposta, le risposte accettate con lo stato di arrivo e il messaggio di fallimento,
+ * l'eventuale join di più risposte e il successore automatico. Le compensazioni da inviare quando il saga
+ * fallisce in uno stato vengono ricavate dalla tabella: sono quelle dei comandi già confermati lungo il percorso,
+ * più, per i timeout, quelle dei comandi in attesa, il cui esito non è noto.
+ * A runtime la ricerca è una EnumMap per stato (e una per tipo di risposta), senza riflessione.
+ */
+public final class SagaDefinition<S extends Enum<S>, T extends SagaInstance<S>> {
+
+    private final S failedState;
+    private final EnumMap<S, Step<S, T>> steps;
+    private final Map<SagaReply<?>, EnumMap<S, Route<S, T>>> routes;
+    private final Map<SagaReply<?>, Set<S>> awaitable;
+
+    private SagaDefinition(S failedState, EnumMap<S, Step<S, T>> steps, Map<SagaReply<?>, EnumMap<S, Route<S, T>>> routes,
+                           Map<SagaReply<?>, Set<S>> awaitable) {
+        this.failedState = failedState;
+        this.steps = steps;
+        this.routes = routes;
+        this.awaitable = awaitable;
+    }
+
+    public static <S extends Enum<S>, T extends SagaInstance<S>> Builder<S, T> builder(Class<S> stateType, S failedState) {
+        return new Builder<>(stateType, failedState);
+    }
+
+    S failedState() {
+        return failedState;
+    }
+
+    Step<S, T> step(S state) {
+        return steps.get(state);
+    }
+
+    // null se la risposta non è attesa nello stato
+    Route<S, T> route(SagaReply<?> reply, S state) {
+        EnumMap<S, Route<S, T>> byState = routes.get(reply);
+        return byState == null ? null : byState.get(state);
+    }
+
+    // false se la risposta non è attesa né nello stato né in uno stato raggiungibile da esso
+    boolean mayAwait(SagaReply<?> reply, S state) {
+        Set<S> states = awaitable.get(reply);
+        return states != null && states.contains(state);
+    }
+
+    /**
+     * Comando dello stato; answered indica che la risposta è già arrivata (join), quindi non va inviato di nuovo.
+     */
+    record Pending<T>(SagaCommand<T> command, Predicate<T> answered) {
+    }
+
+    /**
+     * Risposta accettata in uno stato. Per le parti di un join received/markReceived tengono traccia
+     * delle risposte positive già arrivate.
+     */
+    record Route<S, T>(S target, String event, String failure, Predicate<T> received, Consumer<T> markReceived) {
+
+        boolean isReceived(T saga) {
+            return received != null && received.test(saga);
+        }
+    }
+
+    record Step<S, T>(List<Pending<T>> commands, List<Predicate<T>> joinParts, String partialEvent,
+                      S next, String nextEvent,
+                      List<SagaCommand<T>> compensations, List<SagaCommand<T>> timeoutCompensations) {
+
+        boolean isJoin() {
+            return !joinParts.isEmpty();
+        }
+
+        boolean isJoined(T saga) {
+            return joinParts.stream().allMatch(part -> part.test(saga));
+        }
+
+        List<SagaCommand<T>> pendingCommands(T saga) {
+            return commands.stream()
+                    .filter(pending -> pending.answered() == null || !pending.answered().test(saga))
+                    .map(Pending::command)
+                    .toList();
+        }
+    }
+
+    public static final class Builder<S extends Enum<S>, T extends SagaInstance<S>> {
+
+        private final Class<S> stateType;
+        private final S failedState;
+        private final Map<S, StateBuilder<S, T>> states;
+
+        private Builder(Class<S> stateType, S failedState) {
+            this.stateType = stateType;
+            this.failedState = failedState;
+            this.states = new EnumMap<>(stateType);
+        }
+
+        public StateBuilder<S, T> state(S state) {
+            if (states.containsKey(state)) {
+                throw new IllegalStateException("Stato " + state + " dichiarato due volte");
+            }
+            StateBuilder<S, T> builder = new StateBuilder<>(this, state);
+            states.put(state, builder);
+            return builder;
+        }
+
+        public SagaDefinition<S, T> build() {
+            Map<S, Set<SagaCommand<T>>> confirmed = confirmedCompensations();
+            EnumMap<S, Step<S, T>> steps = new EnumMap<>(stateType);
+            Map<SagaReply<?>, EnumMap<S, Route<S, T>>> routes = new IdentityHashMap<>();
+            for (S state : stateType.getEnumConstants()) {
+                StateBuilder<S, T> builder = states.getOrDefault(state, new StateBuilder<>(this, state));
+                builder.validate();
+                Set<SagaCommand<T>> onTimeout = new LinkedHashSet<>(confirmed.get(state));
+                builder.commands.forEach(pending -> addCompensation(onTimeout, pending.command()));
+                steps.put(state, new Step<>(List.copyOf(builder.commands), List.copyOf(builder.joinParts),
+                        builder.partialEvent, builder.next, builder.nextEvent,
+                        List.copyOf(confirmed.get(state)), List.copyOf(onTimeout)));
+                builder.routes.forEach((reply, route) -> routes
+                        .computeIfAbsent(reply, r -> new EnumMap<>(stateType))
+                        .put(state, builder.isJoinState() ? builder.joinRoute(route) : route));
+            }
+            return new SagaDefinition<>(failedState, steps, routes, awaitable(routes));
+        }
+
+        // Per ogni risposta gli stati da cui può ancora essere accettata: lo stato stesso o uno dei successivi la attende.
+        // Raggiungibilità per punto fisso, come per le compensazioni
+        private Map<SagaReply<?>, Set<S>> awaitable(Map<SagaReply<?>, EnumMap<S, Route<S, T>>> routes) {
+            Map<S, Set<S>> reachable = new EnumMap<>(stateType);
+            for (S state : stateType.getEnumConstants()) {
+                reachable.put(state, EnumSet.of(state));
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (StateBuilder<S, T> from : states.values()) {
+                    for (S target : from.successors()) {
+                        changed |= reachable.get(from.state).addAll(reachable.get(target));
+                    }
+                }
+            }
+            Map<SagaReply<?>, Set<S>> awaitable = new IdentityHashMap<>();
+            routes.forEach((reply, byState) -> {
+                Set<S> states = EnumSet.noneOf(stateType);
+                reachable.forEach((state, reached) -> {
+                    if (reached.stream().anyMatch(byState::containsKey)) {
+                        states.add(state);
+                    }
+                });
+                awaitable.put(reply, states);
+            });
+            return awaitable;
+        }
+
+        // Un comando è confermato quando la sua risposta positiva porta il saga oltre lo stato che lo attendeva:
+        // da lì in poi un fallimento deve inviarne la compensazione. Punto fisso sugli insiemi, che possono solo crescere
+        private Map<S, Set<SagaCommand<T>>> confirmedCompensations() {
+            Map<S, Set<SagaCommand<T>>> confirmed = new EnumMap<>(stateType);
+            for (S state : stateType.getEnumConstants()) {
+                confirmed.put(state, new LinkedHashSet<>());
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (StateBuilder<S, T> from : states.values()) {
+                    Set<SagaCommand<T>> carried = new LinkedHashSet<>(confirmed.get(from.state));
+                    from.commands.forEach(pending -> addCompensation(carried, pending.command()));
+                    for (S target : from.successors()) {
+                        if (target != failedState) {
+                            changed |= confirmed.get(target).addAll(carried);
+                        }
+                    }
+                }
+            }
+            return confirmed;
+        }
+
+        private static <T> void addCompensation(Set<SagaCommand<T>> compensations, SagaCommand<T> command) {
+            if (command.compensation() != null) {
+                compensations.add(command.compensation());
+            }
+        }
+    }
+
+    public static final class StateBuilder<S extends Enum<S>, T extends SagaInstance<S>> {
+
+        private final Builder<S, T> parent;
+        private final S state;
+        private final List<Pending<T>> commands = new ArrayList<>();
+        private final Map<SagaReply<?>, Route<S, T>> routes = new IdentityHashMap<>();
+        private final List<Predicate<T>> joinParts = new ArrayList<>();
+        private S joinTarget;
+        private String joinEvent;
+        private String partialEvent;
+        private S next;
+        private String nextEvent;
+
+        private StateBuilder(Builder<S, T> parent, S state) {
+            this.parent = parent;
+            this.state = state;
+        }
+
+        /**
+         * Comando inviato all'ingresso nello stato e di nuovo a ogni timeout.
+         */
+        public StateBuilder<S, T> sends(SagaCommand<T> command) {
+            commands.add(new Pending<>(command, null));
+            return this;
+        }
+
+        /**
+         * Comando di un join: non viene inviato se la sua risposta è già arrivata (answered).
+         */
+        public StateBuilder<S, T> sends(SagaCommand<T> command, Predicate<T> answered) {
+            commands.add(new Pending<>(command, answered));
+            return this;
+        }
+
+        /**
+         * Risposta che porta il saga in target se positiva, in fallimento (failure + errore della risposta) altrimenti.
+         */
+        public StateBuilder<S, T> on(SagaReply<?> reply, S target, String event, String failure) {
+            routes.put(reply, new Route<>(target, event, failure, null, null));
+            return this;
+        }
+
+        /**
+         * Parte di un join: la risposta positiva viene registrata con markReceived e il saga avanza
+         * solo quando tutte le parti sono arrivate (vedi {@link #joined}).
+         */
+        public StateBuilder<S, T> join(SagaReply<?> reply, Predicate<T> received, Consumer<T> markReceived, String failure) {
+            routes.put(reply, new Route<>(null, null, failure, received, markReceived));
+            joinParts.add(received);
+            return this;
+        }
+
+        public StateBuilder<S, T> joined(S target, String event, String partialEvent) {
+            this.joinTarget = target;
+            this.joinEvent = event;
+            this.partialEvent = partialEvent;
+            return this;
+        }
+
+        /**
+         * Stato di passaggio: il saga prosegue subito in next, anche quando viene ripreso da un timeout.
+         */
+        public StateBuilder<S, T> then(S next, String event) {
+            this.next = next;
+            this.nextEvent = event;
+            return this;
+        }
+
+        public StateBuilder<S, T> state(S state) {
+            return parent.state(state);
+        }
+
+        public SagaDefinition<S, T> build() {
+            return parent.build();
+        }
+
+        private boolean isJoinState() {
+            return !joinParts.isEmpty();
+        }
+
+        private Route<S, T> joinRoute(Route<S, T> part) {
+            return new Route<>(joinTarget, joinEvent, part.failure(), part.received(), part.markReceived());
+        }
+
+        private List<S> successors() {
+            List<S> successors = new ArrayList<>();
+            routes.values().forEach(route -> {
+                if (route.target() != null) {
+                    successors.add(route.target());
+                }
+            });
+            if (joinTarget != null) {
+                successors.add(joinTarget);
+            }
+            if (next != null) {
+                successors.add(next);
+            }
+            return successors;
+        }
+
+        private void validate() {
+            if (isJoinState() && joinTarget == null) {
+                throw new IllegalStateException("Join senza stato di arrivo nello stato " + state);
+            }
+            if (next != null && (!routes.isEmpty() || !commands.isEmpty())) {
+                throw new IllegalStateException("Lo stato di passaggio " + state + " non può attendere risposte");
+            }
+            if (state == parent.failedState && (!routes.isEmpty() || !commands.isEmpty() || next != null)) {
+                throw new IllegalStateException("Lo stato di fallimento " + state + " non ha transizioni");
+            }
+        }
+    }
+}
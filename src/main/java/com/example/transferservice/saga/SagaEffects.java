@@ -0,0 +1,27 @@
+package com.example.transferservice.saga;
+
+/**
+ * Effetti collaterali delle transizioni decise da {@link SagaEngine}: persistenza, outbox, metriche e log
+ * restano al tipo di saga, il motore decide solo cosa fare e in che ordine.
+ */
+public interface SagaEffects<S extends Enum<S>, T extends SagaInstance<S>> {
+
+    // Porta il saga nel nuovo stato, riarma la scadenza e lo salva
+    void transition(T saga, S newState);
+
+    // Salva il saga rimasto nello stesso stato
+    void save(T saga);
+
+    void armDeadline(T saga);
+
+    void send(T saga, SagaCommand<T> command);
+
+    void step(T saga, String event);
+
+    // Chiamato nello stato di partenza, prima di qualunque transizione
+    void replied(T saga, SagaReply<?> reply, boolean success);
+
+    void timedOut(T saga, String action);
+
+    void failed(T saga, String errorMessage);
+}
@@ -0,0 +1,135 @@
+package com.example.transferservice.saga;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * Esegue un {@link SagaDefinition}: un solo percorso per l'avvio, le risposte (singole o a blocchi),
+ * i join delle verifiche in parallelo, i timeout e le compensazioni. Gli effetti collaterali passano da
+ * {@link SagaEffects}; il motore non accede al database e va usato nella transazione del chiamante.
+ */
+@Slf4j
+public class SagaEngine<S extends Enum<S>, T extends SagaInstance<S>> {
+
+    private final SagaDefinition<S, T> definition;
+    private final SagaEffects<S, T> effects;
+
+    public SagaEngine(SagaDefinition<S, T> definition, SagaEffects<S, T> effects) {
+        this.definition = definition;
+        this.effects = effects;
+    }
+
+    /**
+     * Porta il saga nello stato e invia i comandi che vi restano in attesa; da uno stato di passaggio prosegue subito.
+     */
+    public void enter(T saga, S state) {
+        effects.transition(saga, state);
+        SagaDefinition.Step<S, T> step = definition.step(state);
+        if (step.next() != null) {
+            effects.step(saga, step.nextEvent());
+            enter(saga, step.next());
+            return;
+        }
+        sendPending(saga);
+    }
+
+    /**
+     * Invia i comandi dello stato corrente ancora senza risposta (avvio in uno stato già impostato, nuovi invii).
+     */
+    public void sendPending(T saga) {
+        definition.step(saga.getCurrentState()).pendingCommands(saga).forEach(command -> send(saga, command));
+    }
+
+    /**
+     * False se la risposta non può essere accettata né in state né in nessuno stato successivo. Gli stati avanzano
+     * soltanto: basta conoscere uno stato non più recente di quello attuale (es. da una cache) per scartarla.
+     */
+    public boolean mayAccept(SagaReply<?> reply, S state) {
+        return definition.mayAwait(reply, state);
+    }
+
+    /**
+     * Applica la risposta se lo stato corrente la attende; restituisce false se va scartata.
+     */
+    public <R> boolean onReply(SagaReply<R> reply, T saga, R response) {
+        SagaDefinition.Route<S, T> route = definition.route(reply, saga.getCurrentState());
+        if (route == null || route.isReceived(saga)) {
+            return false;
+        }
+        boolean success = reply.isSuccess(response);
+        effects.replied(saga, reply, success);
+        if (!success) {
+            fail(saga, route.failure() + reply.error(response), false);
+            return true;
+        }
+
+        SagaDefinition.Step<S, T> step = definition.step(saga.getCurrentState());
+        if (step.isJoin()) {
+            // Fan-in: si avanza solo quando tutte le parti hanno risposto con esito positivo;
+            // il primo esito negativo chiude il saga e le risposte successive vengono scartate
+            route.markReceived().accept(saga);
+            if (!step.isJoined(saga)) {
+                effects.step(saga, step.partialEvent());
+                effects.save(saga);
+                return true;
+            }
+        }
+        effects.step(saga, route.event());
+        enter(saga, route.target());
+        return true;
+    }
+
+    /**
+     * Saga oltre la scadenza senza risposta: i comandi in attesa vengono reinviati fino a maxAttempts volte,
+     * poi il saga fallisce con le compensazioni dei comandi confermati e di quelli dall'esito incerto.
+     */
+    public void onTimeout(T saga, int maxAttempts) {
+        S state = saga.getCurrentState();
+        SagaDefinition.Step<S, T> step = definition.step(state);
+        if (step.next() != null) {
+            // Stato di passaggio rimasto salvato: manca solo la prosecuzione
+            effects.step(saga, step.nextEvent());
+            enter(saga, step.next());
+            return;
+        }
+
+        if (saga.getAttempts() < maxAttempts) {
+            saga.setAttempts(saga.getAttempts() + 1);
+            log.warn("Timeout del saga {} nello stato {}: nuovo invio ({}/{})",
+                    saga.getSagaId(), state, saga.getAttempts(), maxAttempts);
+            effects.timedOut(saga, "retry");
+            effects.armDeadline(saga);
+            List<SagaCommand<T>> pending = step.pendingCommands(saga);
+            if (pending.isEmpty()) {
+                log.warn("Nessun comando da reinviare per il saga {} nello stato {}", saga.getSagaId(), state);
+            }
+            pending.forEach(command -> send(saga, command));
+            effects.save(saga);
+            return;
+        }
+
+        effects.timedOut(saga, "fail");
+        fail(saga, "Nessuna risposta nello stato " + state + " dopo " + maxAttempts + " nuovi invii", true);
+    }
+
+    /**
+     * Chiude il saga in fallimento; outcomeUnknown (timeout) compensa anche i comandi ancora senza risposta.
+     */
+    public void fail(T saga, String errorMessage, boolean outcomeUnknown) {
+        SagaDefinition.Step<S, T> step = definition.step(saga.getCurrentState());
+        List<SagaCommand<T>> compensations = outcomeUnknown ? step.timeoutCompensations() : step.compensations();
+        effects.failed(saga, errorMessage);
+        saga.setErrorMessage(errorMessage);
+        effects.transition(saga, definition.failedState());
+        for (SagaCommand<T> compensation : compensations) {
+            log.info("Compensazione {} per il saga {}", compensation.name(), saga.getSagaId());
+            effects.send(saga, compensation);
+        }
+    }
+
+    private void send(T saga, SagaCommand<T> command) {
+        effects.step(saga, command.name());
+        effects.send(saga, command);
+    }
+}
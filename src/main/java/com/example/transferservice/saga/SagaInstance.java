@@ -0,0 +1,18 @@
+package com.example.transferservice.saga;
+
+/**
+ * Parte di un saga letta e aggiornata dal motore; i dati di dominio restano all'entità del tipo di saga.
+ */
+public interface SagaInstance<S extends Enum<S>> {
+
+    String getSagaId();
+
+    S getCurrentState();
+
+    // Nuovi invii già fatti per il passo corrente (timeout)
+    int getAttempts();
+
+    void setAttempts(int attempts);
+
+    void setErrorMessage(String errorMessage);
+}
@@ -0,0 +1,24 @@
+package com.example.transferservice.saga;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Tipo di risposta di un partecipante. name identifica la risposta nel registro dei duplicati,
+ * participant e step etichettano la latenza nelle metriche.
+ */
+public record SagaReply<R>(String name, String participant, String step, Function<R, String> sagaIdOf,
+                           Predicate<R> success, Function<R, String> errorOf) {
+
+    public String sagaId(R response) {
+        return sagaIdOf.apply(response);
+    }
+
+    public boolean isSuccess(R response) {
+        return success.test(response);
+    }
+
+    public String error(R response) {
+        return errorOf.apply(response);
+    }
+}
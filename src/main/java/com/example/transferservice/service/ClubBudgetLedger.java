@@ -0,0 +1,157 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.ClubBudgetSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro locale del budget dei club: l'ultimo snapshot ricevuto dal servizio club e gli importi dei saga
+ * avviati da questa istanza che possono ancora addebitarlo. Se lo snapshot copre l'importo con margine,
+ * la verifica del budget viene decisa qui senza il round trip su checkClubBudget; negli altri casi
+ * (snapshot assente o budget insufficiente) decide comunque il servizio club.
+ * Ogni club ha il proprio lock: le prenotazioni concorrenti sullo stesso club sono serializzate,
+ * quelle su club diversi procedono in parallelo.
+ */
+@Service
+@Slf4j
+public class ClubBudgetLedger {
+
+    private final Map<Long, ClubAccount> accounts = new ConcurrentHashMap<>();
+    private final Map<String, Long> clubBySaga = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final BigDecimal headroomRatio;
+
+    public ClubBudgetLedger(MeterRegistry meterRegistry,
+                            @Value("${transfer.club-budget-ledger.enabled:false}") boolean enabled,
+                            @Value("${transfer.club-budget-ledger.headroom-ratio:0.5}") BigDecimal headroomRatio) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.headroomRatio = headroomRatio;
+    }
+
+    /**
+     * Registra l'importo del saga sul club acquirente. Restituisce true se il budget è coperto dallo
+     * snapshot locale (al netto degli importi già prenotati) e la verifica remota può essere saltata.
+     * Se la transazione corrente fallisce la prenotazione viene annullata.
+     */
+    public boolean reserve(TransferSaga saga) {
+        if (!enabled || saga.getFromClubId() == null || saga.getTransferFee() == null) {
+            return false;
+        }
+        ClubAccount account = accounts.computeIfAbsent(saga.getFromClubId(), clubId -> new ClubAccount());
+        boolean covered;
+        synchronized (account) {
+            covered = account.covers(saga.getTransferFee(), headroomRatio);
+            account.pending.put(saga.getSagaId(), saga.getTransferFee());
+            account.reserved = account.reserved.add(saga.getTransferFee());
+        }
+        clubBySaga.put(saga.getSagaId(), saga.getFromClubId());
+        meterRegistry.counter("transfer.club.budget.ledger", "decision", covered ? "local" : "remote").increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(saga.getSagaId());
+                    }
+                }
+            });
+        }
+        return covered;
+    }
+
+    public void onSnapshot(ClubBudgetSnapshot snapshot) {
+        ClubAccount account = accounts.computeIfAbsent(snapshot.getClubId(), clubId -> new ClubAccount());
+        synchronized (account) {
+            account.availableBudget = snapshot.getAvailableBudget();
+            // Gli addebiti confermati prima di questo snapshot sono già compresi nel budget disponibile
+            account.settling.forEach((sagaId, fee) -> {
+                account.reserved = account.reserved.subtract(fee);
+                clubBySaga.remove(sagaId);
+            });
+            account.settling.clear();
+        }
+    }
+
+    /**
+     * Saga fallito: l'importo non verrà addebitato. Saga completato: l'importo resta prenotato fino al
+     * prossimo snapshot, che conterrà l'addebito.
+     */
+    @TransactionalEventListener
+    public void onTransferSagaChanged(TransferSagaChangedEvent event) {
+        if (event.getState() == TransferSagaState.FAILED) {
+            release(event.getSagaId());
+        } else if (event.getState() == TransferSagaState.COMPLETED) {
+            settle(event.getSagaId());
+        }
+    }
+
+    public BigDecimal reservedFor(Long clubId) {
+        ClubAccount account = accounts.get(clubId);
+        if (account == null) {
+            return BigDecimal.ZERO;
+        }
+        synchronized (account) {
+            return account.reserved;
+        }
+    }
+
+    void release(String sagaId) {
+        Long clubId = clubBySaga.remove(sagaId);
+        ClubAccount account = clubId == null ? null : accounts.get(clubId);
+        if (account == null) {
+            return;
+        }
+        synchronized (account) {
+            BigDecimal fee = account.pending.remove(sagaId);
+            if (fee == null) {
+                fee = account.settling.remove(sagaId);
+            }
+            if (fee != null) {
+                account.reserved = account.reserved.subtract(fee);
+            }
+        }
+    }
+
+    private void settle(String sagaId) {
+        Long clubId = clubBySaga.get(sagaId);
+        ClubAccount account = clubId == null ? null : accounts.get(clubId);
+        if (account == null) {
+            return;
+        }
+        synchronized (account) {
+            BigDecimal fee = account.pending.remove(sagaId);
+            if (fee != null) {
+                account.settling.put(sagaId, fee);
+            }
+        }
+    }
+
+    // Stato di un club, letto e modificato solo sotto il lock dell'istanza
+    private static final class ClubAccount {
+
+        private BigDecimal availableBudget;
+        private BigDecimal reserved = BigDecimal.ZERO;
+        private final Map<String, BigDecimal> pending = new HashMap<>();
+        private final Map<String, BigDecimal> settling = new HashMap<>();
+
+        private boolean covers(BigDecimal fee, BigDecimal headroomRatio) {
+            return availableBudget != null
+                    && availableBudget.multiply(headroomRatio).subtract(reserved).compareTo(fee) >= 0;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.OutboxMessage;
+import com.example.transferservice.repository.OutboxMessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drena la tabella outbox verso Kafka a blocchi: i record di un blocco partono insieme
+ * (linger/batch/compressione del producer) e le righe vengono cancellate solo dopo l'ack del broker.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final BindingServiceProperties bindingServiceProperties;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${transfer.outbox.relay.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Scheduled(fixedDelayString = "${transfer.outbox.relay.poll-interval-ms:100}")
+    public void relay() {
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            int relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            // Le righe restano in outbox e verranno ritentate al prossimo giro
+            log.error("Errore durante l'invio dei messaggi in outbox: {}", e.getMessage(), e);
+        }
+    }
+
+    int relayBatch() {
+        List<OutboxMessage> batch = outboxMessageRepository.lockNextBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        CompletableFuture<?>[] acks = batch.stream()
+                .map(this::send)
+                .toArray(CompletableFuture[]::new);
+        kafkaTemplate.flush();
+
+        try {
+            CompletableFuture.allOf(acks).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invio del blocco outbox non confermato dal broker", e);
+        }
+
+        outboxMessageRepository.deleteAllByIdInBatch(batch.stream().map(OutboxMessage::getId).toList());
+        log.debug("Inviati {} messaggi dalla outbox", batch.size());
+        return batch.size();
+    }
+
+    private CompletableFuture<?> send(OutboxMessage outboxMessage) {
+        String topic = bindingServiceProperties.getBindingDestination(outboxMessage.getBindingName());
+        return kafkaTemplate.send(MessageBuilder.withPayload(outboxMessage.getPayload())
+                .setHeader(KafkaHeaders.TOPIC, topic)
+                .setHeader(KafkaHeaders.KEY, outboxMessage.getMessageKey())
+                .setHeader(MessageHeaders.CONTENT_TYPE, outboxMessage.getContentType())
+                .build());
+    }
+}
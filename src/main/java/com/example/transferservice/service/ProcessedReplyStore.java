@@ -0,0 +1,60 @@
+package com.example.transferservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Risposte già elaborate, per scartare le riconsegne di Kafka (at-least-once, retry del binder,
+ * risposte ai reinvii dello sweeper) senza leggere il database. Ogni saga riceve al più una risposta
+ * utile per tipo, quindi la chiave è (sagaId, tipo di risposta). Le voci scadono dopo il TTL:
+ * oltre quella finestra resta la guardia sullo stato in TransferSagaManager.
+ */
+@Service
+public class ProcessedReplyStore {
+
+    private final Cache<ReplyKey, Boolean> processed;
+
+    public ProcessedReplyStore(MeterRegistry meterRegistry,
+                               @Value("${transfer.saga.dedup.maximum-size:200000}") long maximumSize,
+                               @Value("${transfer.saga.dedup.ttl:10m}") Duration ttl) {
+        this.processed = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, processed, "processedReplies");
+    }
+
+    public boolean isProcessed(ReplyKey replyKey) {
+        return processed.getIfPresent(replyKey) != null;
+    }
+
+    /**
+     * Registra la risposta solo al commit: se la transazione fallisce (es. conflitto di @Version)
+     * la riconsegna deve poter essere elaborata di nuovo.
+     */
+    public void markProcessed(ReplyKey replyKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            processed.put(replyKey, Boolean.TRUE);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                processed.put(replyKey, Boolean.TRUE);
+            }
+        });
+    }
+
+    // replyType è il nome del SagaReply (vedi TransferSagaManager.replyKey)
+    public record ReplyKey(String sagaId, String replyType) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.repository.TransferSagaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Sposta in transfer_saga_archive i saga conclusi creati da più della retention. Ogni blocco è un solo
+ * statement nella propria transazione: le transazioni restano brevi e più istanze non si bloccano a vicenda.
+ * Le letture per sagaId ripiegano sull'archivio (TransferSagaCache), quindi lo spostamento è trasparente per le API.
+ */
+@Service
+@ConditionalOnProperty(name = "transfer.saga.archive.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class SagaArchiver {
+
+    private final TransferSagaRepository transferSagaRepository;
+    private final TransferSagaMetrics transferSagaMetrics;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.saga.archive.retention:30d}")
+    private Duration retention;
+
+    @Value("${transfer.saga.archive.batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${transfer.saga.archive.interval-ms:300000}")
+    public void archive() {
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+            int total = 0;
+            int archived;
+            do {
+                archived = transactionTemplate.execute(status -> archiveBatch(cutoff));
+                total += archived;
+            } while (archived == batchSize);
+            if (total > 0) {
+                log.info("Archiviati {} saga conclusi creati prima di {}", total, cutoff);
+            }
+        } catch (Exception e) {
+            // Le righe non spostate restano in transfer_saga e verranno riprese al prossimo giro
+            log.error("Errore durante l'archiviazione dei saga conclusi: {}", e.getMessage(), e);
+        }
+    }
+
+    int archiveBatch(LocalDateTime cutoff) {
+        int archived = transferSagaRepository.archiveTerminalCreatedBefore(cutoff, batchSize);
+        transferSagaMetrics.recordArchived(archived);
+        return archived;
+    }
+}
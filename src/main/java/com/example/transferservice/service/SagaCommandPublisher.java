@@ -0,0 +1,61 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.OutboxMessage;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.repository.OutboxMessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+/**
+ * Pubblica i comandi del saga tramite la tabella outbox, nella stessa transazione
+ * che aggiorna il TransferSaga. L'invio a Kafka è a carico di {@link OutboxRelay}.
+ * Il payload viene serializzato con i converter dei binding, nel content type configurato per il binding.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SagaCommandPublisher {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final CompositeMessageConverter messageConverter;
+    private final BindingServiceProperties bindingServiceProperties;
+
+    @Value("${transfer.saga.message-key:SAGA_ID}")
+    private SagaMessageKey messageKey;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void send(String bindingName, TransferSaga transferSaga, Object command) {
+        String sagaId = transferSaga.getSagaId();
+        String contentType = bindingServiceProperties.getBindingProperties(bindingName).getContentType();
+        OutboxMessage outboxMessage = OutboxMessage.builder()
+                .sagaId(sagaId)
+                .bindingName(bindingName)
+                .messageKey(messageKey.keyOf(transferSaga))
+                .contentType(contentType)
+                .payload(serialize(command, contentType))
+                .build();
+
+        outboxMessageRepository.save(outboxMessage);
+        log.debug("Comando {} accodato in outbox per il saga {}", bindingName, sagaId);
+    }
+
+    private byte[] serialize(Object command, String contentType) {
+        Message<?> message = messageConverter.toMessage(command,
+                new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, contentType)));
+        if (message == null || !(message.getPayload() instanceof byte[] payload)) {
+            throw new IllegalStateException("Impossibile serializzare il comando "
+                    + command.getClass().getSimpleName() + " come " + contentType);
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+/**
+ * Log strutturato degli eventi del saga sul logger transfer.saga.events: una riga per evento, con i campi
+ * come coppie chiave/valore (sagaId, event, state, ...). Il campionamento è deterministico per sagaId:
+ * un saga campionato viene registrato per intero, su ogni istanza, e gli altri non costano nulla.
+ * I fallimenti vengono sempre registrati con il dettaglio completo del saga.
+ * Gli appender sono asincroni: saga, header e payload vengono convertiti in stringa al momento della chiamata,
+ * così il worker dell'appender non legge l'entità gestita (né oggetti mutabili) dopo che è cambiata.
+ */
+@Component
+public class SagaEventLog {
+
+    private static final Logger log = LoggerFactory.getLogger("transfer.saga.events");
+    private static final int SAMPLE_BUCKETS = 10_000;
+
+    private final int sampledBuckets;
+
+    public SagaEventLog(@Value("${transfer.saga.log.sample-rate:0.01}") double sampleRate) {
+        this.sampledBuckets = (int) Math.round(Math.max(0, Math.min(1, sampleRate)) * SAMPLE_BUCKETS);
+    }
+
+    public boolean isSampled(String sagaId) {
+        return sagaId != null && Math.floorMod(sagaId.hashCode(), SAMPLE_BUCKETS) < sampledBuckets;
+    }
+
+    public void step(TransferSaga saga, String event) {
+        if (log.isInfoEnabled() && isSampled(saga.getSagaId())) {
+            log.atInfo()
+                    .addKeyValue("sagaId", saga.getSagaId())
+                    .addKeyValue("event", event)
+                    .addKeyValue("state", saga.getCurrentState())
+                    .log("Evento saga");
+        }
+    }
+
+    /**
+     * Messaggio ricevuto da un binding: header e payload completi solo per i saga campionati.
+     */
+    public void received(String bindingName, String sagaId, Message<?> message) {
+        if (log.isInfoEnabled() && isSampled(sagaId)) {
+            log.atInfo()
+                    .addKeyValue("sagaId", sagaId)
+                    .addKeyValue("event", "received")
+                    .addKeyValue("binding", bindingName)
+                    .addKeyValue("headers", String.valueOf(message.getHeaders()))
+                    .addKeyValue("payload", String.valueOf(message.getPayload()))
+                    .log("Messaggio ricevuto");
+        }
+    }
+
+    public void failed(TransferSaga saga, String errorMessage) {
+        log.atError()
+                .addKeyValue("sagaId", saga.getSagaId())
+                .addKeyValue("event", "failed")
+                .addKeyValue("state", saga.getCurrentState())
+                .addKeyValue("error", errorMessage)
+                .addKeyValue("saga", String.valueOf(saga))
+                .log("Fallimento saga di trasferimento");
+    }
+}
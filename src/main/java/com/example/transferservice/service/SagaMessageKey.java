@@ -0,0 +1,38 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Chiave dei record Kafka dei comandi del saga (transfer.saga.message-key). Kafka garantisce l'ordine
+ * solo all'interno di una partizione: con la chiave i comandi dello stesso saga, o dello stesso giocatore,
+ * vengono consumati in ordine e i partecipanti rispondono con la stessa chiave.
+ */
+public enum SagaMessageKey {
+    SAGA_ID,
+    PLAYER_ID;
+
+    public String keyOf(TransferSaga transferSaga) {
+        return this == PLAYER_ID ? String.valueOf(transferSaga.getPlayerId()) : transferSaga.getSagaId();
+    }
+
+    /**
+     * Chiave attesa su una risposta; null se la risposta non porta il dato da cui deriva
+     * (le risposte dei club non contengono il playerId).
+     */
+    public String expectedReplyKey(String sagaId, Long playerId) {
+        if (this == SAGA_ID) {
+            return sagaId;
+        }
+        return playerId == null ? null : String.valueOf(playerId);
+    }
+
+    // Il binder deserializza le chiavi come byte[]
+    public static String decode(Object receivedKey) {
+        if (receivedKey instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return receivedKey == null ? null : receivedKey.toString();
+    }
+}
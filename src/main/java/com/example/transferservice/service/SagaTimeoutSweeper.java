@@ -0,0 +1,85 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.repository.TransferSagaRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Riprende i saga rimasti senza risposta oltre la scadenza del passo corrente.
+ * I candidati vengono letti a blocchi senza lock; ogni saga viene poi preso con SKIP LOCKED nella propria
+ * transazione: più istanze possono girare in parallelo, una risposta in arrivo sullo stesso saga attende
+ * solo quel commit e un saga che fallisce non annulla i timeout degli altri.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SagaTimeoutSweeper {
+
+    // Cursore iniziale: tutte le scadenze sono successive
+    private static final LocalDateTime SWEEP_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final TransferSagaRepository transferSagaRepository;
+    private final TransferSagaManager transferSagaManager;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${transfer.saga.timeout.batch-size:200}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${transfer.saga.timeout.sweep-interval-ms:10000}")
+    public void sweep() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime afterDeadline = SWEEP_START;
+        long afterId = 0;
+        int handled = 0;
+        try {
+            List<TransferSaga> expired;
+            do {
+                expired = transferSagaRepository.findExpiredAfter(now, afterDeadline, afterId, batchSize);
+                for (TransferSaga saga : expired) {
+                    if (sweepOne(transactionTemplate, saga.getId(), now)) {
+                        handled++;
+                    }
+                }
+                if (!expired.isEmpty()) {
+                    TransferSaga last = expired.get(expired.size() - 1);
+                    afterDeadline = last.getDeadline();
+                    afterId = last.getId();
+                }
+            } while (expired.size() == batchSize);
+        } catch (Exception e) {
+            // Le scadenze non cambiano: i saga non ancora gestiti verranno ripresi al prossimo giro
+            log.error("Errore durante la ricerca dei saga scaduti: {}", e.getMessage(), e);
+        }
+        if (handled > 0) {
+            log.info("Gestiti {} saga scaduti", handled);
+        }
+    }
+
+    /**
+     * Gestisce il timeout di un saga nella propria transazione; restituisce false se il saga è stato saltato
+     * (bloccato, non più scaduto) o se la gestione è fallita, nel qual caso verrà ripreso al prossimo giro.
+     */
+    boolean sweepOne(TransactionTemplate transactionTemplate, Long id, LocalDateTime now) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> transferSagaRepository.lockExpired(id, now)
+                    .map(saga -> {
+                        transferSagaManager.handleTimeout(saga);
+                        return true;
+                    })
+                    .orElse(false)));
+        } catch (Exception e) {
+            log.error("Errore nella gestione del timeout del saga {}: {}", id, e.getMessage(), e);
+            return false;
+        }
+    }
+}
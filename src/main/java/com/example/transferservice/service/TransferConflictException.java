@@ -0,0 +1,25 @@
+package com.example.transferservice.service;
+
+import lombok.Getter;
+
+/**
+ * Esiste già un trasferimento in corso per il giocatore. activeSagaId è null quando il conflitto
+ * è stato rilevato dall'indice univoco sul database (saga avviato da un'altra istanza);
+ * playerId è null se non si sa quale giocatore del blocco ha causato il conflitto.
+ */
+@Getter
+public class TransferConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long playerId;
+    private final String activeSagaId;
+
+    public TransferConflictException(Long playerId, String activeSagaId) {
+        super(playerId != null
+                ? "Trasferimento già in corso per il giocatore " + playerId
+                : "Trasferimento già in corso per uno dei giocatori");
+        this.playerId = playerId;
+        this.activeSagaId = activeSagaId;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.TransferSagaStateChanged;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prenotazioni in memoria dei giocatori con un trasferimento in corso: una richiesta concorrente per lo stesso
+ * giocatore viene respinta senza aprire transazioni. Vale solo per i saga avviati da questa istanza;
+ * il vincolo definitivo è l'indice univoco parziale ux_transfer_saga_active_player.
+ * La prenotazione si libera quando il saga si conclude (qui o su un'altra istanza), se la transazione
+ * che l'ha creata fallisce, oppure allo scadere del TTL se la notifica di chiusura va persa.
+ */
+@Service
+@Slf4j
+public class TransferReservations {
+
+    private final Cache<Long, String> byPlayer;
+    private final Map<String, Long> bySaga = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public TransferReservations(MeterRegistry meterRegistry,
+                                @Value("${transfer.reservation.maximum-size:100000}") long maximumSize,
+                                @Value("${transfer.reservation.ttl:30m}") Duration ttl) {
+        this.meterRegistry = meterRegistry;
+        this.byPlayer = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .evictionListener((Long playerId, String sagaId, RemovalCause cause) -> bySaga.remove(sagaId))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byPlayer, "transferReservations");
+    }
+
+    /**
+     * Saga attivo che blocca il giocatore, se noto a questa istanza.
+     */
+    public Optional<String> activeSagaOf(Long playerId) {
+        return Optional.ofNullable(byPlayer.getIfPresent(playerId));
+    }
+
+    /**
+     * Prenota il giocatore per il saga. Restituisce il saga che lo occupa già, oppure empty se la
+     * prenotazione è riuscita; se la transazione corrente non va a buon fine la prenotazione viene annullata.
+     */
+    public Optional<String> reserve(Long playerId, String sagaId) {
+        String holder = byPlayer.asMap().putIfAbsent(playerId, sagaId);
+        if (holder != null && !holder.equals(sagaId)) {
+            meterRegistry.counter("transfer.reservation.conflict").increment();
+            return Optional.of(holder);
+        }
+        bySaga.put(sagaId, playerId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(sagaId);
+                    }
+                }
+            });
+        }
+        return Optional.empty();
+    }
+
+    public void release(String sagaId) {
+        Long playerId = bySaga.remove(sagaId);
+        if (playerId != null) {
+            byPlayer.asMap().remove(playerId, sagaId);
+        }
+    }
+
+    @TransactionalEventListener
+    public void onTransferSagaChanged(TransferSagaChangedEvent event) {
+        if (event.isTerminal()) {
+            release(event.getSagaId());
+        }
+    }
+
+    // Il saga può concludersi su un'altra istanza, che ha ricevuto l'ultima risposta del partecipante
+    public void onRemoteStateChanged(TransferSagaStateChanged notification) {
+        if (TransferSagaState.COMPLETED.name().equals(notification.getState())
+                || TransferSagaState.FAILED.name().equals(notification.getState())) {
+            release(notification.getSagaId());
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.messages.TransferSagaStateChanged;
+import com.example.transferservice.repository.TransferSagaRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cache write-through dello stato dei saga, indicizzata per sagaId. I saga attivi scadono dopo un TTL breve
+ * dalla scrittura; quelli conclusi (COMPLETED/FAILED) non cambiano più e scadono per inattività.
+ * Ogni cambio di stato viene notificato alle altre istanze sul topic transfer-saga-state-changed,
+ * una volta per saga e per transazione.
+ */
+@Service
+@Slf4j
+public class TransferSagaCache {
+
+    private final TransferSagaRepository transferSagaRepository;
+    private final StreamBridge streamBridge;
+    private final boolean replicaReads;
+    private final Cache<String, TransferStatusResponse> cache;
+    private final String instanceId = UUID.randomUUID().toString();
+    // Chiave della mappa dei cambi di stato della transazione corrente, vedi collectStateChange
+    private final Object pendingKey = new Object();
+
+    public TransferSagaCache(TransferSagaRepository transferSagaRepository,
+                             StreamBridge streamBridge,
+                             MeterRegistry meterRegistry,
+                             @Value("${transfer.saga-cache.maximum-size:100000}") long maximumSize,
+                             @Value("${transfer.saga-cache.active-ttl:30s}") Duration activeTtl,
+                             @Value("${transfer.saga-cache.terminal-idle:10m}") Duration terminalIdle,
+                             @Value("${transfer.datasource.replica.enabled:false}") boolean replicaReads) {
+        this.transferSagaRepository = transferSagaRepository;
+        this.streamBridge = streamBridge;
+        this.replicaReads = replicaReads;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new SagaExpiry(activeTtl.toNanos(), terminalIdle.toNanos()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "transferSaga");
+    }
+
+    /**
+     * Restituisce lo stato del saga dalla cache, caricandolo dal database in caso di miss; i saga non più
+     * presenti in transfer_saga vengono cercati nell'archivio. L'oggetto restituito è condiviso e non va modificato.
+     */
+    public Optional<TransferStatusResponse> get(String sagaId) {
+        return Optional.ofNullable(cache.get(sagaId, this::load));
+    }
+
+    /**
+     * Stato in cache, senza caricarlo in caso di miss; non accede mai al database. Non è mai più recente
+     * dello stato committato: viene scritto dopo il commit e non torna indietro (versione).
+     */
+    public Optional<TransferStatusResponse> peek(String sagaId) {
+        return Optional.ofNullable(cache.getIfPresent(sagaId));
+    }
+
+    /**
+     * True solo se il saga è in cache ed è già concluso; non accede mai al database.
+     */
+    public boolean isKnownTerminal(String sagaId) {
+        TransferStatusResponse cached = cache.getIfPresent(sagaId);
+        return cached != null && cached.isTerminal();
+    }
+
+    public void evict(String sagaId) {
+        cache.invalidate(sagaId);
+    }
+
+    // Prima degli altri listener: chi legge dalla cache dopo il commit trova già lo stato nuovo.
+    // Un lettore concorrente può aver già caricato dal database lo stato committato (versione successiva):
+    // l'evento lo sostituisce solo se è più recente, così la cache non torna indietro
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onTransferSagaChanged(TransferSagaChangedEvent event) {
+        cache.asMap().merge(event.getSagaId(), event.getStatus(),
+                (cached, update) -> update.isNewerThan(cached) ? update : cached);
+    }
+
+    /**
+     * Alla pubblicazione: in transazione si conserva solo l'ultimo stato di ogni saga, notificato alle altre
+     * istanze una volta sola dopo il commit. Fuori transazione la notifica parte subito.
+     */
+    @EventListener
+    public void collectStateChange(TransferSagaChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            notifyStateChanged(event);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, TransferSagaChangedEvent> pending =
+                (Map<String, TransferSagaChangedEvent>) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            pending = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(pendingKey, pending);
+            Map<String, TransferSagaChangedEvent> changes = pending;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changes.values().forEach(TransferSagaCache.this::notifyStateChanged);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+                }
+            });
+        }
+        pending.put(event.getSagaId(), event);
+    }
+
+    // Dopo il commit un errore del broker non deve risalire al consumer, che ritenterebbe una risposta già
+    // applicata: la notifica si perde e le altre istanze vedono il nuovo stato alla scadenza del TTL
+    private void notifyStateChanged(TransferSagaChangedEvent event) {
+        TransferSagaStateChanged notification = TransferSagaStateChanged.builder()
+                .sagaId(event.getSagaId())
+                .state(event.getState().name())
+                .sourceInstanceId(instanceId)
+                .build();
+        try {
+            streamBridge.send("transferSagaStateChanged-out-0", notification);
+        } catch (RuntimeException e) {
+            log.warn("Notifica del cambio di stato del saga {} non inviata: {}", event.getSagaId(), e.getMessage());
+        }
+    }
+
+    public void onRemoteStateChanged(TransferSagaStateChanged notification) {
+        if (!instanceId.equals(notification.getSourceInstanceId())) {
+            cache.invalidate(notification.getSagaId());
+        }
+    }
+
+    // Proiezione in transazione read-only, quindi sulla replica se configurata. Dalla replica solo uno stato
+    // concluso è definitivo: un saga attivo, o non ancora replicato, viene riletto dal primario
+    private TransferStatusResponse load(String sagaId) {
+        Optional<TransferStatusResponse> status = transferSagaRepository.findStatusBySagaId(sagaId);
+        if (replicaReads && !status.map(TransferStatusResponse::isTerminal).orElse(false)) {
+            status = transferSagaRepository.findPrimaryStatusBySagaId(sagaId);
+        }
+        return status
+                .or(() -> transferSagaRepository.findArchivedBySagaId(sagaId).map(TransferService::toStatusResponse))
+                .orElse(null);
+    }
+
+    private record SagaExpiry(long activeTtlNanos, long terminalIdleNanos)
+            implements Expiry<String, TransferStatusResponse> {
+
+        @Override
+        public long expireAfterCreate(String sagaId, TransferStatusResponse status, long currentTime) {
+            return status.isTerminal() ? terminalIdleNanos : activeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String sagaId, TransferStatusResponse status, long currentTime, long currentDuration) {
+            return expireAfterCreate(sagaId, status, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String sagaId, TransferStatusResponse status, long currentTime, long currentDuration) {
+            return status.isTerminal() ? terminalIdleNanos : currentDuration;
+        }
+    }
+}
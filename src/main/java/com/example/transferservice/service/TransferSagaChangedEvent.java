@@ -0,0 +1,30 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import lombok.Getter;
+
+/**
+ * Evento applicativo pubblicato ad ogni salvataggio di un TransferSaga. Contiene una copia dello stato
+ * presa alla pubblicazione: i listener transazionali lo ricevono dopo il commit, quando l'entità può
+ * essere già passata per altri stati nella stessa transazione (es. CLUB_BUDGET_UPDATED → COMPLETED).
+ * La copia porta la versione del saga, che ordina gli aggiornamenti (vedi TransferStatusResponse#isNewerThan).
+ */
+@Getter
+public class TransferSagaChangedEvent {
+
+    private final String sagaId;
+    private final TransferSagaState state;
+    private final TransferStatusResponse status;
+
+    public TransferSagaChangedEvent(TransferSaga saga) {
+        this.sagaId = saga.getSagaId();
+        this.state = saga.getCurrentState();
+        this.status = TransferService.toStatusResponse(saga);
+    }
+
+    public boolean isTerminal() {
+        return state == TransferSagaState.COMPLETED || state == TransferSagaState.FAILED;
+    }
+}
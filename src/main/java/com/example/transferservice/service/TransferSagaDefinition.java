@@ -0,0 +1,121 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.*;
+import com.example.transferservice.saga.SagaCommand;
+import com.example.transferservice.saga.SagaDefinition;
+import com.example.transferservice.saga.SagaReply;
+
+import static com.example.transferservice.entity.TransferSaga.TransferSagaState.*;
+
+/**
+ * Tabella del saga di trasferimento: verifica budget e disponibilità (in sequenza da STARTED o in parallelo
+ * da CHECKS_PENDING), aggiornamento del club del giocatore e del budget del club. Se il saga fallisce dopo
+ * l'aggiornamento del club (o con l'aggiornamento senza risposta) il giocatore torna al club di origine.
+ */
+public final class TransferSagaDefinition {
+
+    // Comandi
+
+    static final SagaCommand<TransferSaga> CHECK_CLUB_BUDGET = SagaCommand.of(
+            "checkClubBudget", "checkClubBudgetRequest-out-0",
+            saga -> CheckClubBudgetRequest.builder()
+                    .sagaId(saga.getSagaId())
+                    .clubId(saga.getFromClubId())
+                    .transferFee(saga.getTransferFee())
+                    .build());
+
+    static final SagaCommand<TransferSaga> CHECK_PLAYER_AVAILABILITY = SagaCommand.of(
+            "checkPlayerAvailability", "checkPlayerAvailabilityRequest-out-0",
+            saga -> CheckPlayerAvailabilityRequest.builder()
+                    .sagaId(saga.getSagaId())
+                    .playerId(saga.getPlayerId())
+                    .toClubId(saga.getToClubId())
+                    .build());
+
+    // Compensazione: ripristino club del giocatore
+    static final SagaCommand<TransferSaga> RESTORE_PLAYER_CLUB = SagaCommand.of(
+            "restorePlayerClub", "updatePlayerClubRequest-out-0",
+            saga -> UpdatePlayerClubRequest.builder()
+                    .sagaId(saga.getSagaId())
+                    .playerId(saga.getPlayerId())
+                    .newClubId(saga.getFromClubId())
+                    .build());
+
+    static final SagaCommand<TransferSaga> UPDATE_PLAYER_CLUB = SagaCommand.<TransferSaga>of(
+            "updatePlayerClub", "updatePlayerClubRequest-out-0",
+            saga -> UpdatePlayerClubRequest.builder()
+                    .sagaId(saga.getSagaId())
+                    .playerId(saga.getPlayerId())
+                    .newClubId(saga.getToClubId())
+                    .build())
+            .compensatedBy(RESTORE_PLAYER_CLUB);
+
+    static final SagaCommand<TransferSaga> UPDATE_CLUB_BUDGET = SagaCommand.of(
+            "updateClubBudget", "updateClubBudgetRequest-out-0",
+            saga -> UpdateClubBudgetRequest.builder()
+                    .sagaId(saga.getSagaId())
+                    .clubId(saga.getFromClubId())
+                    .transferFee(saga.getTransferFee())
+                    .build());
+
+    // Risposte
+
+    static final SagaReply<CheckClubBudgetResponse> CHECK_CLUB_BUDGET_REPLY = new SagaReply<>(
+            "CheckClubBudgetResponse", "club", "checkClubBudget", CheckClubBudgetResponse::getSagaId,
+            CheckClubBudgetResponse::isBudgetAvailable, CheckClubBudgetResponse::getErrorMessage);
+
+    static final SagaReply<CheckPlayerAvailabilityResponse> CHECK_PLAYER_AVAILABILITY_REPLY = new SagaReply<>(
+            "CheckPlayerAvailabilityResponse", "player", "checkPlayerAvailability", CheckPlayerAvailabilityResponse::getSagaId,
+            CheckPlayerAvailabilityResponse::isPlayerAvailable, CheckPlayerAvailabilityResponse::getErrorMessage);
+
+    static final SagaReply<UpdatePlayerClubResponse> UPDATE_PLAYER_CLUB_REPLY = new SagaReply<>(
+            "UpdatePlayerClubResponse", "player", "updatePlayerClub", UpdatePlayerClubResponse::getSagaId,
+            UpdatePlayerClubResponse::isUpdated, UpdatePlayerClubResponse::getErrorMessage);
+
+    static final SagaReply<UpdateClubBudgetResponse> UPDATE_CLUB_BUDGET_REPLY = new SagaReply<>(
+            "UpdateClubBudgetResponse", "club", "updateClubBudget", UpdateClubBudgetResponse::getSagaId,
+            UpdateClubBudgetResponse::isUpdated, UpdateClubBudgetResponse::getErrorMessage);
+
+    private static final String BUDGET_UNAVAILABLE = "Budget del club non disponibile: ";
+    private static final String PLAYER_UNAVAILABLE = "Giocatore non disponibile: ";
+
+    static final SagaDefinition<TransferSagaState, TransferSaga> DEFINITION =
+            SagaDefinition.<TransferSagaState, TransferSaga>builder(TransferSagaState.class, FAILED)
+                    .state(STARTED)
+                    .sends(CHECK_CLUB_BUDGET)
+                    .on(CHECK_CLUB_BUDGET_REPLY, CLUB_BUDGET_CHECKED, "clubBudgetChecked", BUDGET_UNAVAILABLE)
+
+                    // Verifiche in parallelo: il budget può essere già coperto dal ledger locale all'ingresso
+                    .state(CHECKS_PENDING)
+                    .sends(CHECK_CLUB_BUDGET, TransferSaga::isClubBudgetChecked)
+                    .sends(CHECK_PLAYER_AVAILABILITY, TransferSaga::isPlayerAvailabilityChecked)
+                    .join(CHECK_CLUB_BUDGET_REPLY, TransferSaga::isClubBudgetChecked,
+                            saga -> saga.setClubBudgetChecked(true), BUDGET_UNAVAILABLE)
+                    .join(CHECK_PLAYER_AVAILABILITY_REPLY, TransferSaga::isPlayerAvailabilityChecked,
+                            saga -> saga.setPlayerAvailabilityChecked(true), PLAYER_UNAVAILABLE)
+                    .joined(PLAYER_AVAILABILITY_CHECKED, "checksCompleted", "checkReceived")
+
+                    .state(CLUB_BUDGET_CHECKED)
+                    .sends(CHECK_PLAYER_AVAILABILITY)
+                    .on(CHECK_PLAYER_AVAILABILITY_REPLY, PLAYER_AVAILABILITY_CHECKED, "playerAvailabilityChecked", PLAYER_UNAVAILABLE)
+
+                    .state(PLAYER_AVAILABILITY_CHECKED)
+                    .sends(UPDATE_PLAYER_CLUB)
+                    .on(UPDATE_PLAYER_CLUB_REPLY, PLAYER_CLUB_UPDATED, "playerClubUpdated",
+                            "Impossibile aggiornare il club del giocatore: ")
+
+                    .state(PLAYER_CLUB_UPDATED)
+                    .sends(UPDATE_CLUB_BUDGET)
+                    .on(UPDATE_CLUB_BUDGET_REPLY, CLUB_BUDGET_UPDATED, "clubBudgetUpdated",
+                            "Impossibile aggiornare il budget del club: ")
+
+                    // Entrambi gli aggiornamenti sono confermati: manca solo la chiusura
+                    .state(CLUB_BUDGET_UPDATED)
+                    .then(COMPLETED, "completed")
+                    .build();
+
+    private TransferSagaDefinition() {
+    }
+}
@@ -1,203 +1,303 @@
 package com.example.transferservice.service;
 
+import com.example.transferservice.dto.TransferStatusResponse;
 import com.example.transferservice.entity.TransferSaga;
 import com.example.transferservice.entity.TransferSaga.TransferSagaState;
 import com.example.transferservice.messages.*;
 import com.example.transferservice.repository.TransferSagaRepository;
+import com.example.transferservice.saga.SagaCommand;
+import com.example.transferservice.saga.SagaEffects;
+import com.example.transferservice.saga.SagaEngine;
+import com.example.transferservice.saga.SagaReply;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static com.example.transferservice.service.TransferSagaDefinition.*;
+
+/**
+ * Le transizioni del saga sono nella tabella {@link TransferSagaDefinition} ed eseguite da {@link SagaEngine};
+ * qui restano le transazioni, la deduplica delle risposte, il ledger del budget e gli effetti delle transizioni.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransferSagaManager {
 
     private final TransferSagaRepository transferSagaRepository;
-    private final StreamBridge streamBridge;
+    private final SagaCommandPublisher sagaCommandPublisher;
+    private final TransferSagaCache transferSagaCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransferSagaMetrics transferSagaMetrics;
+    private final ProcessedReplyStore processedReplyStore;
+    private final ClubBudgetLedger clubBudgetLedger;
+    private final SagaEventLog sagaEventLog;
+
+    private final SagaEngine<TransferSagaState, TransferSaga> engine = new SagaEngine<>(DEFINITION, new Effects());
+
+    // Verifica budget e disponibilità giocatore inviate insieme invece che in sequenza
+    @Value("${transfer.saga.parallel-checks:false}")
+    private boolean parallelChecks;
+
+    // Tempo massimo di attesa della risposta a ciascun passo, poi interviene SagaTimeoutSweeper
+    @Value("${transfer.saga.timeout.step-timeout:60s}")
+    private Duration stepTimeout;
+
+    @Value("${transfer.saga.timeout.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Stato iniziale, verifica del budget sul ledger locale e scadenza del primo passo, decisi sull'entità
+     * prima del primo insert: l'avvio del saga non deve riscrivere la riga appena inserita.
+     */
+    public void initializeTransferSaga(TransferSaga transferSaga) {
+        // Budget già coperto dallo snapshot locale del club: la verifica sul servizio club non parte
+        boolean budgetCovered = clubBudgetLedger.reserve(transferSaga);
+        if (parallelChecks) {
+            // Fan-out: le due verifiche non hanno effetti collaterali né dipendenze reciproche
+            transferSaga.setClubBudgetChecked(budgetCovered);
+            transferSaga.setCurrentState(TransferSagaState.CHECKS_PENDING);
+        } else if (budgetCovered) {
+            sagaEventLog.step(transferSaga, "clubBudgetCoveredLocally");
+            transferSaga.setCurrentState(TransferSagaState.CLUB_BUDGET_CHECKED);
+        } else {
+            transferSaga.setCurrentState(TransferSagaState.STARTED);
+        }
+        transferSaga.setAttempts(0);
+        armDeadline(transferSaga);
+    }
 
+    /**
+     * Accoda i comandi dello stato iniziale; il saga deve essere già inizializzato e salvato.
+     */
     @Transactional
     public void startTransferSaga(TransferSaga transferSaga) {
-        log.info("Avvio saga di trasferimento con ID: {}", transferSaga.getSagaId());
-        checkClubBudget(transferSaga);
-    }
-
-    // Fase 1: Verifica budget del club
-    private void checkClubBudget(TransferSaga transferSaga) {
-        log.info("Verifica budget del club: {}", transferSaga.getFromClubId());
-        
-        CheckClubBudgetRequest request = CheckClubBudgetRequest.builder()
-                .sagaId(transferSaga.getSagaId())
-                .clubId(transferSaga.getFromClubId())
-                .transferFee(transferSaga.getTransferFee())
-                .build();
-        
-        streamBridge.send("checkClubBudgetRequest-out-0", request);
-    }
-
-    // Fase 2: Verifica disponibilità giocatore
-    private void checkPlayerAvailability(TransferSaga transferSaga) {
-        log.info("Verifica disponibilità giocatore: {}", transferSaga.getPlayerId());
-        
-        CheckPlayerAvailabilityRequest request = CheckPlayerAvailabilityRequest.builder()
-                .sagaId(transferSaga.getSagaId())
-                .playerId(transferSaga.getPlayerId())
-                .toClubId(transferSaga.getToClubId())
-                .build();
-        
-        streamBridge.send("checkPlayerAvailabilityRequest-out-0", request);
-    }
-
-    // Fase 3: Aggiornamento club del giocatore
-    private void updatePlayerClub(TransferSaga transferSaga) {
-        log.info("Aggiornamento club del giocatore: {} al club: {}", 
-                transferSaga.getPlayerId(), transferSaga.getToClubId());
-        
-        UpdatePlayerClubRequest request = UpdatePlayerClubRequest.builder()
-                .sagaId(transferSaga.getSagaId())
-                .playerId(transferSaga.getPlayerId())
-                .newClubId(transferSaga.getToClubId())
-                .build();
-        
-        streamBridge.send("updatePlayerClubRequest-out-0", request);
-    }
-
-    // Fase 4: Aggiornamento budget del club
-    private void updateClubBudget(TransferSaga transferSaga) {
-        log.info("Aggiornamento budget del club: {}", transferSaga.getFromClubId());
-        
-        UpdateClubBudgetRequest request = UpdateClubBudgetRequest.builder()
-                .sagaId(transferSaga.getSagaId())
-                .clubId(transferSaga.getFromClubId())
-                .transferFee(transferSaga.getTransferFee())
-                .build();
-        
-        streamBridge.send("updateClubBudgetRequest-out-0", request);
-    }
-
-    // Completamento del saga
-    private void completeSaga(TransferSaga transferSaga) {
-        log.info("Completamento saga di trasferimento: {}", transferSaga.getSagaId());
-        transferSaga.setCurrentState(TransferSagaState.COMPLETED);
-        transferSagaRepository.save(transferSaga);
+        sagaEventLog.step(transferSaga, "started");
+        engine.sendPending(transferSaga);
     }
 
-    // Gestione fallimento del saga
-    private void failSaga(TransferSaga transferSaga, String errorMessage) {
-        log.error("Fallimento saga di trasferimento: {}, errore: {}", transferSaga.getSagaId(), errorMessage);
-        transferSaga.setCurrentState(TransferSagaState.FAILED);
-        transferSaga.setErrorMessage(errorMessage);
+    @Transactional
+    public void startTransferSagas(List<TransferSaga> transferSagas) {
+        log.info("Avvio di {} saga di trasferimento", transferSagas.size());
+        // I comandi finiscono in outbox con insert in batch; il relay li spedisce in un unico blocco
+        transferSagas.forEach(engine::sendPending);
+    }
+
+    private void transition(TransferSaga transferSaga, TransferSagaState newState) {
+        transferSagaMetrics.recordTransition(transferSaga, newState, stateEnteredAt(transferSaga));
+        transferSaga.setCurrentState(newState);
+        // updatedAt segna l'ingresso nel nuovo stato già prima del flush (@PreUpdate)
+        transferSaga.setUpdatedAt(LocalDateTime.now());
+        transferSaga.setAttempts(0);
+        armDeadline(transferSaga);
+        saveSaga(transferSaga);
+    }
+
+    private void armDeadline(TransferSaga transferSaga) {
+        transferSaga.setDeadline(transferSaga.isTerminal() ? null : LocalDateTime.now().plus(stepTimeout));
+    }
+
+    private void saveSaga(TransferSaga transferSaga) {
         transferSagaRepository.save(transferSaga);
+        eventPublisher.publishEvent(new TransferSagaChangedEvent(transferSaga));
     }
 
-    // Compensazione: Ripristino club del giocatore
-    private void compensatePlayerClubUpdate(TransferSaga transferSaga) {
-        log.info("Compensazione: ripristino club del giocatore: {} al club originale: {}", 
-                transferSaga.getPlayerId(), transferSaga.getFromClubId());
-        
-        UpdatePlayerClubRequest request = UpdatePlayerClubRequest.builder()
-                .sagaId(transferSaga.getSagaId())
-                .playerId(transferSaga.getPlayerId())
-                .newClubId(transferSaga.getFromClubId())
-                .build();
-        
-        streamBridge.send("updatePlayerClubRequest-out-0", request);
+    // In CHECKS_PENDING updatedAt avanza a ogni verifica ricevuta, ma i comandi sono partiti alla creazione
+    private LocalDateTime stateEnteredAt(TransferSaga transferSaga) {
+        return transferSaga.getCurrentState() == TransferSagaState.CHECKS_PENDING
+                ? transferSaga.getCreatedAt()
+                : transferSaga.getUpdatedAt();
+    }
+
+    // Risposte che il saga non può più attendere (duplicate, tardive, saga già concluso): scartate con lo stato in
+    // cache, senza accedere al database. Lo stato in cache può essere indietro ma mai avanti rispetto al database,
+    // e gli stati avanzano soltanto; la riga viene caricata solo se la risposta può ancora produrre una transizione
+    private boolean isNoLongerAwaited(SagaReply<?> reply, String sagaId) {
+        Optional<TransferStatusResponse> cached = transferSagaCache.peek(sagaId);
+        if (cached.isEmpty() || engine.mayAccept(reply, TransferSagaState.valueOf(cached.get().getState()))) {
+            return false;
+        }
+        log.warn("Risposta {} ignorata: il saga {} è già nello stato {}", reply.name(), sagaId, cached.get().getState());
+        transferSagaMetrics.recordDiscardedReply(reply.name(), "no-longer-awaited");
+        return true;
+    }
+
+    private boolean isDuplicate(ProcessedReplyStore.ReplyKey replyKey) {
+        if (processedReplyStore.isProcessed(replyKey)) {
+            log.warn("Risposta duplicata ignorata: {}", replyKey);
+            transferSagaMetrics.recordDiscardedReply(replyKey.replyType(), "duplicate");
+            return true;
+        }
+        return false;
+    }
+
+    static ProcessedReplyStore.ReplyKey replyKey(SagaReply<?> reply, String sagaId) {
+        return new ProcessedReplyStore.ReplyKey(sagaId, reply.name());
+    }
+
+    // Applica la risposta se il saga la sta attendendo; in entrambi i casi la risposta risulta elaborata
+    // (al commit), così le riconsegne successive vengono scartate senza leggere il database
+    private <R> void applyIfAwaited(TransferSaga saga, SagaReply<R> reply, R response) {
+        TransferSagaState state = saga.getCurrentState();
+        if (!engine.onReply(reply, saga, response)) {
+            log.warn("Risposta {} ignorata: il saga {} è nello stato {}", reply.name(), saga.getSagaId(), state);
+            transferSagaMetrics.recordDiscardedReply(reply.name(), "unexpected-state");
+        }
+        processedReplyStore.markProcessed(replyKey(reply, saga.getSagaId()));
+    }
+
+    // Timeout
+
+    /**
+     * Saga rimasto oltre la scadenza senza risposta: il comando in attesa viene reinviato fino a
+     * maxAttempts volte, poi il saga fallisce con compensazione se il club del giocatore può essere cambiato.
+     * Va chiamato nella transazione che ha acquisito il lock sulla riga (SKIP LOCKED dello sweeper).
+     */
+    @Transactional
+    public void handleTimeout(TransferSaga transferSaga) {
+        engine.onTimeout(transferSaga, maxAttempts);
     }
 
     // Gestori di risposta
 
+    // Niente lock sulla riga: due risposte concorrenti sullo stesso saga (verifiche in parallelo su partizioni
+    // diverse) vengono serializzate da @Version, e il consumer che perde il conflitto viene ritentato dal binder
+
     @Transactional
     public void handleCheckClubBudgetResponse(CheckClubBudgetResponse response) {
-        Optional<TransferSaga> optionalSaga = transferSagaRepository.findBySagaId(response.getSagaId());
-        
-        if (optionalSaga.isEmpty()) {
-            log.error("Saga non trovato con ID: {}", response.getSagaId());
-            return;
-        }
-        
-        TransferSaga saga = optionalSaga.get();
-        
-        if (response.isBudgetAvailable()) {
-            log.info("Budget del club verificato con successo: {}", saga.getFromClubId());
-            saga.setCurrentState(TransferSagaState.CLUB_BUDGET_CHECKED);
-            transferSagaRepository.save(saga);
-            checkPlayerAvailability(saga);
-        } else {
-            log.error("Budget del club non disponibile: {}", saga.getFromClubId());
-            failSaga(saga, "Budget del club non disponibile: " + response.getErrorMessage());
-        }
+        handleReply(CHECK_CLUB_BUDGET_REPLY, response);
     }
 
     @Transactional
     public void handleCheckPlayerAvailabilityResponse(CheckPlayerAvailabilityResponse response) {
-        Optional<TransferSaga> optionalSaga = transferSagaRepository.findBySagaId(response.getSagaId());
-        
-        if (optionalSaga.isEmpty()) {
-            log.error("Saga non trovato con ID: {}", response.getSagaId());
-            return;
-        }
-        
-        TransferSaga saga = optionalSaga.get();
-        
-        if (response.isPlayerAvailable()) {
-            log.info("Disponibilità giocatore verificata con successo: {}", saga.getPlayerId());
-            saga.setCurrentState(TransferSagaState.PLAYER_AVAILABILITY_CHECKED);
-            transferSagaRepository.save(saga);
-            updatePlayerClub(saga);
-        } else {
-            log.error("Giocatore non disponibile: {}", saga.getPlayerId());
-            failSaga(saga, "Giocatore non disponibile: " + response.getErrorMessage());
-        }
+        handleReply(CHECK_PLAYER_AVAILABILITY_REPLY, response);
     }
 
     @Transactional
     public void handleUpdatePlayerClubResponse(UpdatePlayerClubResponse response) {
-        Optional<TransferSaga> optionalSaga = transferSagaRepository.findBySagaId(response.getSagaId());
-        
-        if (optionalSaga.isEmpty()) {
-            log.error("Saga non trovato con ID: {}", response.getSagaId());
+        handleReply(UPDATE_PLAYER_CLUB_REPLY, response);
+    }
+
+    @Transactional
+    public void handleUpdateClubBudgetResponse(UpdateClubBudgetResponse response) {
+        handleReply(UPDATE_CLUB_BUDGET_REPLY, response);
+    }
+
+    private <R> void handleReply(SagaReply<R> reply, R response) {
+        String sagaId = reply.sagaId(response);
+        if (isDuplicate(replyKey(reply, sagaId)) || isNoLongerAwaited(reply, sagaId)) {
             return;
         }
-        
-        TransferSaga saga = optionalSaga.get();
-        
-        if (response.isUpdated()) {
-            log.info("Club del giocatore aggiornato con successo: {}", saga.getPlayerId());
-            saga.setCurrentState(TransferSagaState.PLAYER_CLUB_UPDATED);
-            transferSagaRepository.save(saga);
-            updateClubBudget(saga);
-        } else {
-            log.error("Impossibile aggiornare il club del giocatore: {}", saga.getPlayerId());
-            failSaga(saga, "Impossibile aggiornare il club del giocatore: " + response.getErrorMessage());
-            // Non è necessaria compensazione perché non ci sono operazioni precedenti da annullare
+
+        Optional<TransferSaga> optionalSaga = transferSagaRepository.findBySagaId(sagaId);
+
+        if (optionalSaga.isEmpty()) {
+            log.error("Saga non trovato con ID: {}", sagaId);
+            return;
         }
+
+        applyIfAwaited(optionalSaga.get(), reply, response);
     }
 
+    // Gestori di risposta in modalità batch
+
     @Transactional
-    public void handleUpdateClubBudgetResponse(UpdateClubBudgetResponse response) {
-        Optional<TransferSaga> optionalSaga = transferSagaRepository.findBySagaId(response.getSagaId());
-        
-        if (optionalSaga.isEmpty()) {
-            log.error("Saga non trovato con ID: {}", response.getSagaId());
+    public void handleCheckClubBudgetResponses(List<CheckClubBudgetResponse> responses) {
+        handleBatch(CHECK_CLUB_BUDGET_REPLY, responses);
+    }
+
+    @Transactional
+    public void handleCheckPlayerAvailabilityResponses(List<CheckPlayerAvailabilityResponse> responses) {
+        handleBatch(CHECK_PLAYER_AVAILABILITY_REPLY, responses);
+    }
+
+    @Transactional
+    public void handleUpdatePlayerClubResponses(List<UpdatePlayerClubResponse> responses) {
+        handleBatch(UPDATE_PLAYER_CLUB_REPLY, responses);
+    }
+
+    @Transactional
+    public void handleUpdateClubBudgetResponses(List<UpdateClubBudgetResponse> responses) {
+        handleBatch(UPDATE_CLUB_BUDGET_REPLY, responses);
+    }
+
+    // Un'unica query IN per tutti i saga del blocco; le transizioni vengono applicate in memoria
+    // e scritte in batch al commit
+    private <R> void handleBatch(SagaReply<R> reply, List<R> responses) {
+        List<R> pending = responses.stream()
+                .filter(response -> !isDuplicate(replyKey(reply, reply.sagaId(response))))
+                .filter(response -> !isNoLongerAwaited(reply, reply.sagaId(response)))
+                .toList();
+        if (pending.isEmpty()) {
             return;
         }
-        
-        TransferSaga saga = optionalSaga.get();
-        
-        if (response.isUpdated()) {
-            log.info("Budget del club aggiornato con successo: {}", saga.getFromClubId());
-            saga.setCurrentState(TransferSagaState.CLUB_BUDGET_UPDATED);
-            transferSagaRepository.save(saga);
-            completeSaga(saga);
-        } else {
-            log.error("Impossibile aggiornare il budget del club: {}", saga.getFromClubId());
-            failSaga(saga, "Impossibile aggiornare il budget del club: " + response.getErrorMessage());
-            // Compensazione: ripristino club del giocatore
-            compensatePlayerClubUpdate(saga);
+        Map<String, TransferSaga> sagas = transferSagaRepository
+                .findAllBySagaIdIn(pending.stream().map(reply::sagaId).toList())
+                .stream()
+                .collect(Collectors.toMap(TransferSaga::getSagaId, Function.identity()));
+
+        for (R response : pending) {
+            TransferSaga saga = sagas.get(reply.sagaId(response));
+            if (saga == null) {
+                log.error("Saga non trovato con ID: {}", reply.sagaId(response));
+                continue;
+            }
+            applyIfAwaited(saga, reply, response);
+        }
+    }
+
+    // Effetti delle transizioni decise dal motore
+    private final class Effects implements SagaEffects<TransferSagaState, TransferSaga> {
+
+        @Override
+        public void transition(TransferSaga saga, TransferSagaState newState) {
+            TransferSagaManager.this.transition(saga, newState);
+        }
+
+        @Override
+        public void save(TransferSaga saga) {
+            saveSaga(saga);
+        }
+
+        @Override
+        public void armDeadline(TransferSaga saga) {
+            TransferSagaManager.this.armDeadline(saga);
+        }
+
+        @Override
+        public void send(TransferSaga saga, SagaCommand<TransferSaga> command) {
+            sagaCommandPublisher.send(command.bindingName(), saga, command.create(saga));
+        }
+
+        @Override
+        public void step(TransferSaga saga, String event) {
+            sagaEventLog.step(saga, event);
+        }
+
+        @Override
+        public void replied(TransferSaga saga, SagaReply<?> reply, boolean success) {
+            transferSagaMetrics.recordParticipantResponse(reply.participant(), reply.step(), success, stateEnteredAt(saga));
+        }
+
+        @Override
+        public void timedOut(TransferSaga saga, String action) {
+            transferSagaMetrics.recordTimeout(saga.getCurrentState(), action);
+        }
+
+        @Override
+        public void failed(TransferSaga saga, String errorMessage) {
+            sagaEventLog.failed(saga, errorMessage);
         }
     }
 }
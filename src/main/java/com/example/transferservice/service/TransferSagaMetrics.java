@@ -0,0 +1,136 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.repository.TransferSagaRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metriche del saga. Le durate si misurano dall'ingresso nello stato corrente:
+ * il tempo passato in uno stato di attesa è la latenza del partecipante che deve rispondere.
+ */
+@Component
+@Slf4j
+public class TransferSagaMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final TransferSagaRepository transferSagaRepository;
+    private final Map<TransferSagaState, AtomicLong> inFlight = new EnumMap<>(TransferSagaState.class);
+
+    public TransferSagaMetrics(MeterRegistry meterRegistry, TransferSagaRepository transferSagaRepository) {
+        this.meterRegistry = meterRegistry;
+        this.transferSagaRepository = transferSagaRepository;
+
+        for (TransferSagaState state : TransferSagaState.values()) {
+            if (state == TransferSagaState.COMPLETED || state == TransferSagaState.FAILED) {
+                continue;
+            }
+            AtomicLong count = new AtomicLong();
+            inFlight.put(state, count);
+            Gauge.builder("transfer.saga.in.flight", count, AtomicLong::get)
+                    .description("Saga attivi per stato")
+                    .tag("state", state.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Tempo trascorso nello stato corrente (da stateEnteredAt) prima del passaggio a newState;
+     * alla chiusura registra anche la durata complessiva del saga.
+     */
+    public void recordTransition(TransferSaga saga, TransferSagaState newState, LocalDateTime stateEnteredAt) {
+        Timer.builder("transfer.saga.transition")
+                .description("Tempo trascorso nello stato di partenza")
+                .tag("from", saga.getCurrentState().name())
+                .tag("to", newState.name())
+                .register(meterRegistry)
+                .record(since(stateEnteredAt));
+
+        if (newState == TransferSagaState.COMPLETED || newState == TransferSagaState.FAILED) {
+            Timer.builder("transfer.saga.duration")
+                    .description("Durata del saga dalla creazione alla conclusione")
+                    .tag("outcome", newState.name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(since(saga.getCreatedAt()));
+        }
+    }
+
+    /**
+     * Latenza del partecipante: dall'accodamento del comando alla risposta.
+     */
+    public void recordParticipantResponse(String participant, String step, boolean success, LocalDateTime requestedAt) {
+        Timer.builder("transfer.saga.participant.latency")
+                .description("Latenza di risposta dei servizi partecipanti")
+                .tag("participant", participant)
+                .tag("step", step)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(since(requestedAt));
+    }
+
+    public void recordDiscardedReply(String replyType, String reason) {
+        meterRegistry.counter("transfer.saga.reply.discarded", "reply", replyType, "reason", reason).increment();
+    }
+
+    public void recordReplyKeyMismatch(String bindingName) {
+        meterRegistry.counter("transfer.stream.reply.key.mismatch", "binding", bindingName).increment();
+    }
+
+    public void recordArchived(int count) {
+        meterRegistry.counter("transfer.saga.archived").increment(count);
+    }
+
+    public void recordTimeout(TransferSagaState state, String action) {
+        meterRegistry.counter("transfer.saga.timeout", "state", state.name(), "action", action).increment();
+    }
+
+    /**
+     * Ritardo tra la scrittura del record su Kafka e il suo consumo; in modalità batch
+     * l'header contiene un timestamp per ogni record del poll.
+     */
+    public void recordConsumeLag(String bindingName, Message<?> message) {
+        Object timestamps = message.getHeaders().get(KafkaHeaders.RECEIVED_TIMESTAMP);
+        if (timestamps == null) {
+            return;
+        }
+        Timer timer = Timer.builder("transfer.stream.consume.lag")
+                .description("Ritardo tra produzione e consumo dei messaggi")
+                .tag("binding", bindingName)
+                .register(meterRegistry);
+        long now = System.currentTimeMillis();
+        if (timestamps instanceof List<?> batch) {
+            batch.forEach(timestamp -> timer.record(Duration.ofMillis(now - ((Number) timestamp).longValue())));
+        } else {
+            timer.record(Duration.ofMillis(now - ((Number) timestamps).longValue()));
+        }
+    }
+
+    // Una query aggregata periodica invece di un contatore per istanza: il valore resta corretto con più repliche
+    @Scheduled(fixedDelayString = "${transfer.metrics.in-flight-refresh-ms:15000}")
+    public void refreshInFlight() {
+        Map<TransferSagaState, Long> counts = new EnumMap<>(TransferSagaState.class);
+        transferSagaRepository.countActiveByState()
+                .forEach(stateCount -> counts.put(stateCount.getState(), stateCount.getCount()));
+        inFlight.forEach((state, count) -> count.set(counts.getOrDefault(state, 0L)));
+        log.debug("Saga attivi per stato: {}", counts);
+    }
+
+    private static Duration since(LocalDateTime instant) {
+        return instant == null ? Duration.ZERO : Duration.between(instant, LocalDateTime.now());
+    }
+}
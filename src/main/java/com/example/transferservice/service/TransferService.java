@@ -1,14 +1,23 @@
 package com.example.transferservice.service;
 
+import com.example.transferservice.controller.TransferRequest;
+import com.example.transferservice.dto.TransferSagaSummary;
+import com.example.transferservice.dto.TransferSearchCriteria;
+import com.example.transferservice.dto.TransferSearchCursor;
+import com.example.transferservice.dto.TransferSearchResponse;
 import com.example.transferservice.dto.TransferStatusResponse;
 import com.example.transferservice.entity.TransferSaga;
 import com.example.transferservice.repository.TransferSagaRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -16,8 +25,13 @@ import java.util.UUID;
 @Slf4j
 public class TransferService {
 
+    static final String ACTIVE_PLAYER_INDEX = "ux_transfer_saga_active_player";
+
     private final TransferSagaRepository transferSagaRepository;
     private final TransferSagaManager transferSagaManager;
+    private final TransferSagaCache transferSagaCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransferReservations transferReservations;
 
     @Transactional
     public String initiateTransfer(Long playerId, Long fromClubId, Long toClubId, BigDecimal transferFee) {
@@ -26,6 +40,9 @@ public class TransferService {
         
         // Genera un ID univoco per il saga
         String sagaId = UUID.randomUUID().toString();
+        transferReservations.reserve(playerId, sagaId).ifPresent(activeSagaId -> {
+            throw new TransferConflictException(playerId, activeSagaId);
+        });
         
         // Crea e salva l'entità TransferSaga
         TransferSaga transferSaga = TransferSaga.builder()
@@ -36,8 +53,12 @@ public class TransferService {
                 .transferFee(transferFee)
                 .currentState(TransferSaga.TransferSagaState.STARTED)
                 .build();
+        // Un solo insert per saga: stato iniziale e scadenza sono decisi prima del salvataggio
+        transferSagaManager.initializeTransferSaga(transferSaga);
         
         transferSagaRepository.save(transferSaga);
+        flushCheckingActivePlayer(playerId);
+        eventPublisher.publishEvent(new TransferSagaChangedEvent(transferSaga));
         log.info("Creato nuovo TransferSaga con ID: {}", sagaId);
         
         // Avvia il processo di orchestrazione del saga
@@ -46,20 +67,84 @@ public class TransferService {
         return sagaId;
     }
 
+    @Transactional
+    public List<String> initiateTransfers(List<TransferRequest> requests) {
+        log.info("Inizializzazione di {} trasferimenti in blocco", requests.size());
+
+        List<TransferSaga> transferSagas = requests.stream()
+                .map(request -> TransferSaga.builder()
+                        .sagaId(UUID.randomUUID().toString())
+                        .playerId(request.getPlayerId())
+                        .fromClubId(request.getFromClubId())
+                        .toClubId(request.getToClubId())
+                        .transferFee(request.getTransferFee())
+                        .currentState(TransferSaga.TransferSagaState.STARTED)
+                        .build())
+                .toList();
+        // Anche due richieste dello stesso blocco per lo stesso giocatore sono in conflitto
+        transferSagas.forEach(transferSaga -> transferReservations.reserve(transferSaga.getPlayerId(), transferSaga.getSagaId())
+                .ifPresent(activeSagaId -> {
+                    throw new TransferConflictException(transferSaga.getPlayerId(), activeSagaId);
+                }));
+        transferSagas.forEach(transferSagaManager::initializeTransferSaga);
+
+        // Gli insert vengono raggruppati da Hibernate (hibernate.jdbc.batch_size)
+        transferSagaRepository.saveAll(transferSagas);
+        flushCheckingActivePlayer(null);
+        transferSagas.forEach(transferSaga -> eventPublisher.publishEvent(new TransferSagaChangedEvent(transferSaga)));
+        log.info("Creati {} nuovi TransferSaga", transferSagas.size());
+
+        transferSagaManager.startTransferSagas(transferSagas);
+
+        return transferSagas.stream()
+                .map(TransferSaga::getSagaId)
+                .toList();
+    }
+
     public TransferStatusResponse getTransferStatus(String sagaId) {
-    TransferSaga saga = transferSagaRepository.findBySagaId(sagaId)
-        .orElseThrow(() -> new RuntimeException("Transfer saga not found with ID: " + sagaId));
-        
-    return TransferStatusResponse.builder()
-        .sagaId(saga.getSagaId())
-        .playerId(saga.getPlayerId())
-        .fromClubId(saga.getFromClubId())
-        .toClubId(saga.getToClubId())
-        .transferFee(saga.getTransferFee())
-        .state(saga.getCurrentState().name())
-        .errorMessage(saga.getErrorMessage())
-        .createdAt(saga.getCreatedAt())
-        .updatedAt(saga.getUpdatedAt())
-        .build();
+        return transferSagaCache.get(sagaId)
+                .orElseThrow(() -> new RuntimeException("Transfer saga not found with ID: " + sagaId));
+    }
+
+    /**
+     * Una pagina della ricerca: si legge una riga in più per sapere se esiste la pagina successiva.
+     */
+    @Transactional(readOnly = true)
+    public TransferSearchResponse searchTransfers(TransferSearchCriteria criteria, TransferSearchCursor after, int limit) {
+        List<TransferSagaSummary> rows = transferSagaRepository.searchSummaries(criteria, after, limit + 1);
+        if (rows.size() <= limit) {
+            return new TransferSearchResponse(rows, null);
+        }
+        List<TransferSagaSummary> page = rows.subList(0, limit);
+        return new TransferSearchResponse(page, TransferSearchCursor.after(page.get(limit - 1)).encode());
+    }
+
+    // Insert eseguiti subito: la violazione dell'indice univoco sui saga attivi diventa un conflitto,
+    // non un errore al commit. Serve per i saga avviati da altre istanze, ignoti alle prenotazioni locali
+    private void flushCheckingActivePlayer(Long playerId) {
+        try {
+            transferSagaRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && ACTIVE_PLAYER_INDEX.equals(violation.getConstraintName())) {
+                throw new TransferConflictException(playerId, null);
+            }
+            throw e;
+        }
+    }
+
+    static TransferStatusResponse toStatusResponse(TransferSaga saga) {
+        return TransferStatusResponse.builder()
+                .sagaId(saga.getSagaId())
+                .playerId(saga.getPlayerId())
+                .fromClubId(saga.getFromClubId())
+                .toClubId(saga.getToClubId())
+                .transferFee(saga.getTransferFee())
+                .state(saga.getCurrentState().name())
+                .errorMessage(saga.getErrorMessage())
+                .createdAt(saga.getCreatedAt())
+                .updatedAt(saga.getUpdatedAt())
+                .version(saga.getVersion())
+                .build();
     }
 }
@@ -0,0 +1,218 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.dto.TransferStatusResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registro in memoria dei client in attesa dello stato di un saga (stream SSE). Un subscriber è solo
+ * un oggetto in una mappa: nessun thread resta occupato finché il saga non cambia stato.
+ * Gli aggiornamenti arrivano dai commit locali e dalle notifiche delle altre istanze;
+ * sugli stati COMPLETED/FAILED lo stream viene chiuso.
+ * Le scritture sui client partono da un pool dedicato e limitato: un client lento o mezzo aperto non blocca
+ * il thread del commit (consumer delle risposte, pool di creazione) né il consumer delle notifiche.
+ */
+@Service
+@Slf4j
+public class TransferStatusSubscriptions implements DisposableBean {
+
+    public interface Subscriber {
+
+        void send(TransferStatusResponse status) throws Exception;
+
+        void complete();
+    }
+
+    private final TransferSagaCache transferSagaCache;
+    private final int maxSubscribers;
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final Executor sendExecutor;
+
+    @Autowired
+    public TransferStatusSubscriptions(TransferSagaCache transferSagaCache,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${transfer.status-stream.max-subscribers:50000}") int maxSubscribers,
+                                       @Value("${transfer.status-stream.send-pool-size:4}") int sendPoolSize,
+                                       @Value("${transfer.status-stream.send-queue-capacity:10000}") int sendQueueCapacity) {
+        this(transferSagaCache, meterRegistry, maxSubscribers, sendExecutor(sendPoolSize, sendQueueCapacity));
+    }
+
+    TransferStatusSubscriptions(TransferSagaCache transferSagaCache,
+                                MeterRegistry meterRegistry,
+                                int maxSubscribers,
+                                Executor sendExecutor) {
+        this.transferSagaCache = transferSagaCache;
+        this.maxSubscribers = maxSubscribers;
+        this.sendExecutor = sendExecutor;
+        Gauge.builder("transfer.status.subscribers", count, AtomicInteger::get)
+                .description("Client collegati allo stream di stato dei saga")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra il subscriber e gli invia lo stato corrente. La lettura avviene dopo la registrazione,
+     * così un cambio di stato concorrente non va perso. Restituisce empty se il limite è raggiunto.
+     */
+    public Optional<Subscription> subscribe(String sagaId, Subscriber subscriber) {
+        if (count.incrementAndGet() > maxSubscribers) {
+            count.decrementAndGet();
+            log.warn("Limite di {} subscriber raggiunto, stream rifiutato per il saga {}", maxSubscribers, sagaId);
+            return Optional.empty();
+        }
+        Subscription subscription = new Subscription(sagaId, subscriber);
+        subscriptions.compute(sagaId, (id, waiting) -> {
+            Set<Subscription> updated = waiting != null ? waiting : ConcurrentHashMap.newKeySet();
+            updated.add(subscription);
+            return updated;
+        });
+
+        transferSagaCache.get(sagaId).ifPresent(subscription::push);
+        return Optional.of(subscription);
+    }
+
+    @TransactionalEventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onTransferSagaChanged(TransferSagaChangedEvent event) {
+        // Copia presa alla pubblicazione: anche gli stati intermedi della transazione arrivano ai client
+        Set<Subscription> waiting = subscriptions.get(event.getSagaId());
+        if (waiting != null) {
+            waiting.forEach(subscription -> subscription.push(event.getStatus()));
+        }
+    }
+
+    /**
+     * Cambio di stato notificato da un'altra istanza (o l'eco dei propri): va chiamato dopo
+     * l'invalidazione della cache, così la lettura restituisce lo stato aggiornato.
+     */
+    public void onRemoteStateChanged(String sagaId) {
+        Set<Subscription> waiting = subscriptions.get(sagaId);
+        if (waiting == null || waiting.isEmpty()) {
+            return;
+        }
+        transferSagaCache.get(sagaId)
+                .ifPresent(status -> waiting.forEach(subscription -> subscription.push(status)));
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public void destroy() {
+        if (sendExecutor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        }
+    }
+
+    private static ThreadPoolTaskExecutor sendExecutor(int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("status-stream-");
+        executor.initialize();
+        return executor;
+    }
+
+    public final class Subscription {
+
+        private final String sagaId;
+        private final Subscriber subscriber;
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        // Stati in attesa di invio, al più uno per stato del saga; pending, last e draining sono protetti da this
+        private final Deque<TransferStatusResponse> pending = new ArrayDeque<>();
+        private TransferStatusResponse last;
+        private boolean draining;
+
+        private Subscription(String sagaId, Subscriber subscriber) {
+            this.sagaId = sagaId;
+            this.subscriber = subscriber;
+        }
+
+        // Commit locale e notifica remota dello stesso saga possono arrivare in qualsiasi ordine: si accoda solo
+        // uno stato più recente dell'ultimo visto (versione, poi updatedAt) e di stato diverso
+        private void push(TransferStatusResponse status) {
+            synchronized (this) {
+                if (!active.get() || !status.isNewerThan(last)) {
+                    return;
+                }
+                boolean changed = last == null || !status.getState().equals(last.getState());
+                last = status;
+                if (!changed) {
+                    return;
+                }
+                pending.add(status);
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                sendExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Pool saturo: lo stream viene chiuso e il client, ricollegandosi, riceve lo stato corrente
+                log.warn("Invio dello stato del saga {} rifiutato, pool dello stream saturo", sagaId);
+                cancel();
+                subscriber.complete();
+            }
+        }
+
+        // Un solo drain per subscriber alla volta: gli stati partono nell'ordine in cui sono stati accodati
+        private void drain() {
+            while (true) {
+                TransferStatusResponse status;
+                synchronized (this) {
+                    status = active.get() ? pending.poll() : null;
+                    if (status == null) {
+                        pending.clear();
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    subscriber.send(status);
+                } catch (Exception e) {
+                    log.debug("Client dello stream del saga {} non raggiungibile: {}", sagaId, e.getMessage());
+                    cancel();
+                    return;
+                }
+                if (status.isTerminal()) {
+                    cancel();
+                    subscriber.complete();
+                    return;
+                }
+            }
+        }
+
+        public void cancel() {
+            if (active.compareAndSet(true, false)) {
+                subscriptions.computeIfPresent(sagaId, (id, waiting) -> {
+                    waiting.remove(this);
+                    return waiting.isEmpty() ? null : waiting;
+                });
+                count.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.transferservice.stream;
+
+import com.example.transferservice.messages.*;
+import com.example.transferservice.service.TransferSagaManager;
+import com.example.transferservice.service.TransferSagaMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Consumer in modalità batch: sostituiscono quelli di {@link StreamConfig} sui binding
+ * con consumer.batch-mode=true. Ogni poll viene gestito con una sola transazione.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class BatchStreamConfig {
+
+    private final TransferSagaManager transferSagaManager;
+    private final TransferSagaMetrics transferSagaMetrics;
+    private final ReplyKeyVerifier replyKeyVerifier;
+
+    @Bean("checkClubBudgetResponse")
+    @ConditionalOnProperty(name = "spring.cloud.stream.bindings.checkClubBudgetResponse-in-0.consumer.batch-mode",
+            havingValue = "true")
+    public Consumer<Message<List<CheckClubBudgetResponse>>> checkClubBudgetResponseBatch() {
+        return message -> {
+            List<CheckClubBudgetResponse> responses = message.getPayload();
+            transferSagaMetrics.recordConsumeLag("checkClubBudgetResponse-in-0", message);
+            replyKeyVerifier.verifyBatch("checkClubBudgetResponse-in-0", message, CheckClubBudgetResponse::getSagaId, response -> null);
+            log.debug("Ricevute {} risposte verifica budget club", responses.size());
+            transferSagaManager.handleCheckClubBudgetResponses(responses);
+        };
+    }
+
+    @Bean("checkPlayerAvailabilityResponse")
+    @ConditionalOnProperty(name = "spring.cloud.stream.bindings.checkPlayerAvailabilityResponse-in-0.consumer.batch-mode",
+            havingValue = "true")
+    public Consumer<Message<List<CheckPlayerAvailabilityResponse>>> checkPlayerAvailabilityResponseBatch() {
+        return message -> {
+            List<CheckPlayerAvailabilityResponse> responses = message.getPayload();
+            transferSagaMetrics.recordConsumeLag("checkPlayerAvailabilityResponse-in-0", message);
+            replyKeyVerifier.verifyBatch("checkPlayerAvailabilityResponse-in-0", message, CheckPlayerAvailabilityResponse::getSagaId, CheckPlayerAvailabilityResponse::getPlayerId);
+            log.debug("Ricevute {} risposte verifica disponibilità giocatore", responses.size());
+            transferSagaManager.handleCheckPlayerAvailabilityResponses(responses);
+        };
+    }
+
+    @Bean("updatePlayerClubResponse")
+    @ConditionalOnProperty(name = "spring.cloud.stream.bindings.updatePlayerClubResponse-in-0.consumer.batch-mode",
+            havingValue = "true")
+    public Consumer<Message<List<UpdatePlayerClubResponse>>> updatePlayerClubResponseBatch() {
+        return message -> {
+            List<UpdatePlayerClubResponse> responses = message.getPayload();
+            transferSagaMetrics.recordConsumeLag("updatePlayerClubResponse-in-0", message);
+            replyKeyVerifier.verifyBatch("updatePlayerClubResponse-in-0", message, UpdatePlayerClubResponse::getSagaId, UpdatePlayerClubResponse::getPlayerId);
+            log.debug("Ricevute {} risposte aggiornamento club giocatore", responses.size());
+            transferSagaManager.handleUpdatePlayerClubResponses(responses);
+        };
+    }
+
+    @Bean("updateClubBudgetResponse")
+    @ConditionalOnProperty(name = "spring.cloud.stream.bindings.updateClubBudgetResponse-in-0.consumer.batch-mode",
+            havingValue = "true")
+    public Consumer<Message<List<UpdateClubBudgetResponse>>> updateClubBudgetResponseBatch() {
+        return message -> {
+            List<UpdateClubBudgetResponse> responses = message.getPayload();
+            transferSagaMetrics.recordConsumeLag("updateClubBudgetResponse-in-0", message);
+            replyKeyVerifier.verifyBatch("updateClubBudgetResponse-in-0", message, UpdateClubBudgetResponse::getSagaId, response -> null);
+            log.debug("Ricevute {} risposte aggiornamento budget club", responses.size());
+            transferSagaManager.handleUpdateClubBudgetResponses(responses);
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.transferservice.stream;
+
+import com.example.transferservice.service.SagaMessageKey;
+import com.example.transferservice.service.TransferSagaMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Controlla che i partecipanti rispondano con la chiave del comando. Una risposta senza chiave, o con
+ * una chiave diversa, finisce su un'altra partizione e perde l'ordinamento rispetto alle altre risposte
+ * dello stesso saga: viene segnalata ma comunque elaborata, la guardia sullo stato del saga resta valida.
+ */
+@Component
+@Slf4j
+public class ReplyKeyVerifier {
+
+    private final SagaMessageKey messageKey;
+    private final TransferSagaMetrics transferSagaMetrics;
+
+    public ReplyKeyVerifier(@Value("${transfer.saga.message-key:SAGA_ID}") SagaMessageKey messageKey,
+                            TransferSagaMetrics transferSagaMetrics) {
+        this.messageKey = messageKey;
+        this.transferSagaMetrics = transferSagaMetrics;
+    }
+
+    public void verify(String bindingName, Message<?> message, String sagaId, Long playerId) {
+        verify(bindingName, message.getHeaders().get(KafkaHeaders.RECEIVED_KEY), sagaId, playerId);
+    }
+
+    // In modalità batch l'header contiene una chiave per ogni record del poll
+    public <R> void verifyBatch(String bindingName, Message<List<R>> message,
+                                Function<R, String> sagaIdOf, Function<R, Long> playerIdOf) {
+        List<R> replies = message.getPayload();
+        Object keys = message.getHeaders().get(KafkaHeaders.RECEIVED_KEY);
+        List<?> receivedKeys = keys instanceof List<?> list ? list : null;
+        for (int i = 0; i < replies.size(); i++) {
+            R reply = replies.get(i);
+            Object receivedKey = receivedKeys != null && i < receivedKeys.size() ? receivedKeys.get(i) : null;
+            verify(bindingName, receivedKey, sagaIdOf.apply(reply), playerIdOf.apply(reply));
+        }
+    }
+
+    private void verify(String bindingName, Object receivedKey, String sagaId, Long playerId) {
+        String key = SagaMessageKey.decode(receivedKey);
+        String expected = messageKey.expectedReplyKey(sagaId, playerId);
+        if (key == null || (expected != null && !Objects.equals(expected, key))) {
+            log.warn("Risposta su {} per il saga {} con chiave {} invece di {}", bindingName, sagaId, key, expected);
+            transferSagaMetrics.recordReplyKeyMismatch(bindingName);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.transferservice.stream;
+
+import com.example.transferservice.messages.codec.SagaBinaryCodec;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converter per il content type application/x-transfer-saga ({@link SagaBinaryCodec}). Si attiva
+ * per binding con spring.cloud.stream.bindings.X.content-type; i binding senza configurazione restano JSON.
+ */
+@Component
+public class SagaBinaryMessageConverter extends AbstractMessageConverter {
+
+    public SagaBinaryMessageConverter() {
+        super(SagaBinaryCodec.CONTENT_TYPE);
+        // Un messaggio senza content type non è binario: resta al converter JSON
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SagaBinaryCodec.supports(clazz);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        if (!(message.getPayload() instanceof byte[] payload)) {
+            return null;
+        }
+        try {
+            return SagaBinaryCodec.decode(payload, targetClass);
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException(message, "Payload binario non valido: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return SagaBinaryCodec.encode(payload);
+    }
+}
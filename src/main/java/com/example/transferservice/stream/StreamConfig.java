@@ -1,13 +1,21 @@
 package com.example.transferservice.stream;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.example.transferservice.messages.*;
+import com.example.transferservice.service.ClubBudgetLedger;
+import com.example.transferservice.service.SagaEventLog;
+import com.example.transferservice.service.TransferSagaCache;
 import com.example.transferservice.service.TransferSagaManager;
+import com.example.transferservice.service.TransferSagaMetrics;
+import com.example.transferservice.service.TransferReservations;
+import com.example.transferservice.service.TransferStatusSubscriptions;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,16 +26,28 @@ import lombok.extern.slf4j.Slf4j;
 public class StreamConfig {
 
     private final TransferSagaManager transferSagaManager;
+    private final TransferSagaCache transferSagaCache;
+    private final TransferSagaMetrics transferSagaMetrics;
+    private final ReplyKeyVerifier replyKeyVerifier;
+    private final TransferStatusSubscriptions transferStatusSubscriptions;
+    private final TransferReservations transferReservations;
+    private final ClubBudgetLedger clubBudgetLedger;
+    private final SagaEventLog sagaEventLog;
 
     // Consumers per le risposte dai servizi
     @Bean
+    @ConditionalOnProperty(name = "spring.cloud.stream.bindings.checkClubBudgetResponse-in-0.consumer.batch-mode",
+            havingValue = "false", matchIfMissing = true)
     public Consumer<Message<CheckClubBudgetResponse>> checkClubBudgetResponse() {
         return message -> {
+            transferSagaMetrics.recordConsumeLag("checkClubBudgetResponse-in-0", message);
+            replyKeyVerifier.verify("checkClubBudgetResponse-in-0", message, message.getPayload().getSagaId(), null);
             try {
-                log.info("Raw message received: {}", message);
-                log.info("Headers: {}", message.getHeaders());
-                log.info("Payload: {}", message.getPayload());
+                sagaEventLog.received("checkClubBudgetResponse-in-0", message.getPayload().getSagaId(), message);
                 transferSagaManager.handleCheckClubBudgetResponse(message.getPayload());
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // Conflitto di versione con un'altra risposta sullo stesso saga: il binder ritenta con lo stato aggiornato
+                throw e;
             } catch (Exception e) {
                 log.error("Error processing message: {}", e.getMessage(), e);
             }
@@ -35,26 +55,55 @@ public class StreamConfig {
     }
 
     @Bean
+    @ConditionalOnProperty(name = "spring.cloud.stream.bindings.checkPlayerAvailabilityResponse-in-0.consumer.batch-mode",
+            havingValue = "false", matchIfMissing = true)
     public Consumer<Message<CheckPlayerAvailabilityResponse>> checkPlayerAvailabilityResponse() {
         return message -> {
-            log.info("Ricevuta risposta verifica disponibilità giocatore: {}", message.getPayload());
+            transferSagaMetrics.recordConsumeLag("checkPlayerAvailabilityResponse-in-0", message);
+            replyKeyVerifier.verify("checkPlayerAvailabilityResponse-in-0", message, message.getPayload().getSagaId(), message.getPayload().getPlayerId());
+            sagaEventLog.received("checkPlayerAvailabilityResponse-in-0", message.getPayload().getSagaId(), message);
             transferSagaManager.handleCheckPlayerAvailabilityResponse(message.getPayload());
         };
     }
 
     @Bean
+    @ConditionalOnProperty(name = "spring.cloud.stream.bindings.updatePlayerClubResponse-in-0.consumer.batch-mode",
+            havingValue = "false", matchIfMissing = true)
     public Consumer<Message<UpdatePlayerClubResponse>> updatePlayerClubResponse() {
         return message -> {
-            log.info("Ricevuta risposta aggiornamento club giocatore: {}", message.getPayload());
+            transferSagaMetrics.recordConsumeLag("updatePlayerClubResponse-in-0", message);
+            replyKeyVerifier.verify("updatePlayerClubResponse-in-0", message, message.getPayload().getSagaId(), message.getPayload().getPlayerId());
+            sagaEventLog.received("updatePlayerClubResponse-in-0", message.getPayload().getSagaId(), message);
             transferSagaManager.handleUpdatePlayerClubResponse(message.getPayload());
         };
     }
 
     @Bean
+    @ConditionalOnProperty(name = "spring.cloud.stream.bindings.updateClubBudgetResponse-in-0.consumer.batch-mode",
+            havingValue = "false", matchIfMissing = true)
     public Consumer<Message<UpdateClubBudgetResponse>> updateClubBudgetResponse() {
         return message -> {
-            log.info("Ricevuta risposta aggiornamento budget club: {}", message.getPayload());
+            transferSagaMetrics.recordConsumeLag("updateClubBudgetResponse-in-0", message);
+            replyKeyVerifier.verify("updateClubBudgetResponse-in-0", message, message.getPayload().getSagaId(), null);
+            sagaEventLog.received("updateClubBudgetResponse-in-0", message.getPayload().getSagaId(), message);
             transferSagaManager.handleUpdateClubBudgetResponse(message.getPayload());
         };
     }
+
+    // Notifiche di cambio stato dalle altre istanze (gruppo anonimo: ogni istanza riceve tutto)
+    @Bean
+    public Consumer<Message<TransferSagaStateChanged>> transferSagaStateChanged() {
+        return message -> {
+            transferSagaCache.onRemoteStateChanged(message.getPayload());
+            transferStatusSubscriptions.onRemoteStateChanged(message.getPayload().getSagaId());
+            transferReservations.onRemoteStateChanged(message.getPayload());
+        };
+    }
+
+    // Snapshot del budget dei club dal topic compattato (gruppo anonimo, lettura dall'inizio: ogni istanza
+    // ricostruisce l'intero registro all'avvio)
+    @Bean
+    public Consumer<Message<ClubBudgetSnapshot>> clubBudgetSnapshot() {
+        return message -> clubBudgetLedger.onSnapshot(message.getPayload());
+    }
 }
@@ -0,0 +1,54 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Riempimento di transfer_saga a blocchi di id, con un commit per blocco: i lock sulle righe durano un blocco,
+ * non l'intera tabella, e risposte e sweeper della versione in servizio proseguono.
+ * L'update ricevuto deve filtrare con id > ? AND id <= ?; le righe inserite dopo la lettura dell'id massimo
+ * devono essere già scritte correttamente dall'applicazione (o da un trigger).
+ */
+public abstract class BatchedUpdateMigration extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 5000;
+
+    private final String update;
+
+    protected BatchedUpdateMigration(String update) {
+        this.update = update;
+    }
+
+    // Fuori dalla transazione di Flyway: ogni blocco viene confermato appena scritto
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        long maxId;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM transfer_saga")) {
+            resultSet.next();
+            maxId = resultSet.getLong(1);
+        }
+
+        try (PreparedStatement batch = connection.prepareStatement(update)) {
+            for (long from = 0; from < maxId; from += BATCH_SIZE) {
+                batch.setLong(1, from);
+                batch.setLong(2, from + BATCH_SIZE);
+                batch.executeUpdate();
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+            }
+        }
+    }
+}
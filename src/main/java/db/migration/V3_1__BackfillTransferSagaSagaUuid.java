@@ -0,0 +1,13 @@
+package db.migration;
+
+/**
+ * Riempie saga_uuid sulle righe esistenti (V3) a blocchi. Le righe inserite dopo la lettura dell'id massimo
+ * sono già allineate dal trigger di V3.
+ */
+public class V3_1__BackfillTransferSagaSagaUuid extends BatchedUpdateMigration {
+
+    public V3_1__BackfillTransferSagaSagaUuid() {
+        super("UPDATE transfer_saga SET saga_uuid = saga_id::uuid "
+                + "WHERE id > ? AND id <= ? AND saga_uuid IS NULL");
+    }
+}
@@ -0,0 +1,13 @@
+package db.migration;
+
+/**
+ * Scadenza dei saga attivi esistenti (V6), a blocchi: lo sweeper li riprende 60 secondi dopo l'ultimo
+ * aggiornamento. I saga creati dopo la lettura dell'id massimo hanno già la scadenza scritta dall'applicazione.
+ */
+public class V6_2__BackfillTransferSagaDeadline extends BatchedUpdateMigration {
+
+    public V6_2__BackfillTransferSagaDeadline() {
+        super("UPDATE transfer_saga SET deadline = updated_at + INTERVAL '60 seconds' "
+                + "WHERE id > ? AND id <= ? AND current_state NOT IN ('COMPLETED', 'FAILED') AND deadline IS NULL");
+    }
+}
@@ -0,0 +1,16 @@
+-- Verifica preliminare di V11: con più saga attivi per lo stesso giocatore l'indice univoco non può essere creato.
+-- La migrazione si ferma con l'elenco dei giocatori coinvolti; i saga in eccesso vanno chiusi (FAILED) a mano.
+-- Migrazione separata: Flyway non mescola istruzioni transazionali e CONCURRENTLY nello stesso script
+DO $$
+DECLARE
+    duplicated TEXT;
+BEGIN
+    SELECT string_agg(player_id::TEXT, ', ') INTO duplicated
+    FROM (SELECT player_id FROM transfer_saga
+          WHERE current_state NOT IN ('COMPLETED', 'FAILED')
+          GROUP BY player_id HAVING count(*) > 1) players;
+    IF duplicated IS NOT NULL THEN
+        RAISE EXCEPTION 'Saga attivi duplicati per i giocatori %: chiuderli prima di creare ux_transfer_saga_active_player',
+            duplicated;
+    END IF;
+END $$;
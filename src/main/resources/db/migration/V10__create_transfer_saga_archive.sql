@@ -0,0 +1,18 @@
+-- Archivio dei saga conclusi: SagaArchiver vi sposta in blocco le righe COMPLETED/FAILED più vecchie
+-- della retention, così transfer_saga e i suoi indici contengono solo i saga recenti.
+-- Le colonne di lavorazione (deadline, tentativi, esiti delle verifiche, versione) non servono più
+CREATE TABLE transfer_saga_archive (
+    id            BIGINT PRIMARY KEY,
+    saga_id       UUID         NOT NULL,
+    player_id     BIGINT,
+    from_club_id  BIGINT,
+    to_club_id    BIGINT,
+    transfer_fee  NUMERIC(38, 2),
+    current_state VARCHAR(255) NOT NULL,
+    created_at    TIMESTAMP(6),
+    updated_at    TIMESTAMP(6),
+    error_message VARCHAR(255),
+    archived_at   TIMESTAMP(6) NOT NULL
+);
+
+CREATE UNIQUE INDEX ux_transfer_saga_archive_saga_id ON transfer_saga_archive (saga_id);
@@ -0,0 +1,9 @@
+-- Al più un saga attivo per giocatore: due trasferimenti concorrenti dello stesso giocatore si escludono
+-- già all'insert invece di arrivare entrambi a updatePlayerClub. L'indice è parziale come
+-- ix_transfer_saga_state_deadline (stessi stati nel predicato) e contiene solo i saga in corso.
+-- I duplicati già presenti vengono segnalati da V10_1. Se ne compaiono durante la creazione, questa fallisce e
+-- lascia l'indice INVALID: viene eliminato alla nuova esecuzione invece di essere saltato da IF NOT EXISTS
+DROP INDEX CONCURRENTLY IF EXISTS ux_transfer_saga_active_player;
+CREATE UNIQUE INDEX CONCURRENTLY ux_transfer_saga_active_player
+    ON transfer_saga (player_id)
+    WHERE current_state NOT IN ('COMPLETED', 'FAILED');
@@ -0,0 +1,13 @@
+-- Schema iniziale, equivalente a quello generato da ddl-auto=update
+CREATE TABLE IF NOT EXISTS transfer_saga (
+    id            BIGSERIAL PRIMARY KEY,
+    saga_id       VARCHAR(255),
+    player_id     BIGINT,
+    from_club_id  BIGINT,
+    to_club_id    BIGINT,
+    transfer_fee  NUMERIC(38, 2),
+    current_state VARCHAR(255),
+    created_at    TIMESTAMP(6),
+    updated_at    TIMESTAMP(6),
+    error_message VARCHAR(255)
+);
@@ -0,0 +1,11 @@
+-- Da IDENTITY a sequenza con optimizer pooled (allocationSize = 50)
+CREATE SEQUENCE IF NOT EXISTS transfer_saga_seq INCREMENT BY 50;
+
+-- Il pooled optimizer usa l'intervallo (nextval - 49, nextval]: si parte oltre l'id massimo esistente
+SELECT setval('transfer_saga_seq', COALESCE(MAX(id), 0) + 50) FROM transfer_saga;
+
+ALTER TABLE transfer_saga ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE transfer_saga ALTER COLUMN id DROP DEFAULT;
+
+-- La sequenza del BIGSERIAL di V1 non è più usata da nessuna colonna
+DROP SEQUENCE IF EXISTS transfer_saga_id_seq;
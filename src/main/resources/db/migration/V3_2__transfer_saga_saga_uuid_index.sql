@@ -0,0 +1,5 @@
+-- CONCURRENTLY non blocca le scritture durante la creazione; Flyway esegue la migrazione fuori transazione.
+-- Una creazione CONCURRENTLY fallita lascia l'indice INVALID con lo stesso nome: va eliminato prima di ricrearlo,
+-- IF NOT EXISTS lo salterebbe e l'unicità non sarebbe garantita
+DROP INDEX CONCURRENTLY IF EXISTS ux_transfer_saga_saga_uuid;
+CREATE UNIQUE INDEX CONCURRENTLY ux_transfer_saga_saga_uuid ON transfer_saga (saga_uuid);
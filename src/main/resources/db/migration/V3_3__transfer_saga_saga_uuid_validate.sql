@@ -0,0 +1,3 @@
+-- Verifica delle righe esistenti con un lock SHARE UPDATE EXCLUSIVE, compatibile con le scritture.
+-- Migrazione separata: Flyway non mescola istruzioni transazionali e CONCURRENTLY nello stesso script
+ALTER TABLE transfer_saga VALIDATE CONSTRAINT ck_transfer_saga_saga_uuid_not_null;
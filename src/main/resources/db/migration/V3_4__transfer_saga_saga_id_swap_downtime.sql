@@ -0,0 +1,13 @@
+-- MIGRAZIONE CON FERMO: rimuove la colonna saga_id di testo ancora scritta dalla versione precedente,
+-- le cui istanze vanno fermate prima di questo passo (procedura in V3).
+-- SET NOT NULL usa il vincolo già validato in V3_3 e non rilegge la tabella, gli altri passi modificano
+-- solo il catalogo: il fermo dura il tempo del rilascio, non una scansione della tabella
+ALTER TABLE transfer_saga ALTER COLUMN saga_uuid SET NOT NULL;
+ALTER TABLE transfer_saga DROP CONSTRAINT ck_transfer_saga_saga_uuid_not_null;
+
+DROP TRIGGER trg_transfer_saga_sync_saga_uuid ON transfer_saga;
+DROP FUNCTION transfer_saga_sync_saga_uuid();
+
+ALTER TABLE transfer_saga DROP COLUMN saga_id;
+ALTER TABLE transfer_saga RENAME COLUMN saga_uuid TO saga_id;
+ALTER INDEX ux_transfer_saga_saga_uuid RENAME TO ux_transfer_saga_saga_id;
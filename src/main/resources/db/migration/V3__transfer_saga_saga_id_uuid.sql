@@ -0,0 +1,28 @@
+-- saga_id diventa uuid nativo con indice univoco: le lookup per sagaId non fanno più scansioni sequenziali.
+-- La conversione è divisa in più migrazioni:
+--   V3   nuova colonna saga_uuid, allineata da un trigger per le righe scritte dalla versione precedente
+--   V3_1 riempimento delle righe esistenti a blocchi, un commit per blocco (db.migration, Java)
+--   V3_2 indice univoco CONCURRENTLY, senza bloccare le scritture
+--   V3_3 validazione del vincolo NOT NULL sulle righe esistenti
+--   V3_4 scambio delle colonne: richiede il FERMO della versione precedente, che scrive saga_id come testo
+-- V3 - V3_3 possono girare con la versione precedente in servizio, prima del rilascio:
+--   flyway migrate -target=3.3 (oppure l'applicazione con spring.flyway.target=3.3)
+-- Poi si fermano le istanze precedenti e si avvia la nuova versione, che applica V3_4 e le successive.
+-- Con un solo flyway migrate senza target l'intera conversione richiede lo stesso fermo
+ALTER TABLE transfer_saga ADD COLUMN saga_uuid UUID;
+
+-- Le righe scritte dalla versione precedente dell'applicazione durante la migrazione restano allineate
+CREATE FUNCTION transfer_saga_sync_saga_uuid() RETURNS trigger AS $$
+BEGIN
+    NEW.saga_uuid := NEW.saga_id::uuid;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_transfer_saga_sync_saga_uuid
+    BEFORE INSERT OR UPDATE OF saga_id ON transfer_saga
+    FOR EACH ROW EXECUTE FUNCTION transfer_saga_sync_saga_uuid();
+
+-- NOT VALID: vale subito per le nuove righe, la verifica di quelle esistenti è in V3_3
+ALTER TABLE transfer_saga ADD CONSTRAINT ck_transfer_saga_saga_uuid_not_null
+    CHECK (saga_uuid IS NOT NULL) NOT VALID;
@@ -0,0 +1,11 @@
+-- Outbox dei comandi del saga, scritta nella stessa transazione del TransferSaga e drenata da OutboxRelay
+CREATE SEQUENCE IF NOT EXISTS outbox_message_seq INCREMENT BY 50;
+
+CREATE TABLE outbox_message (
+    id           BIGINT PRIMARY KEY,
+    saga_id      UUID         NOT NULL,
+    binding_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(255) NOT NULL,
+    payload      BYTEA        NOT NULL,
+    created_at   TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,3 @@
+-- Esiti delle verifiche ricevuti nello stato CHECKS_PENDING (verifiche budget e disponibilità in parallelo)
+ALTER TABLE transfer_saga ADD COLUMN club_budget_checked BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE transfer_saga ADD COLUMN player_availability_checked BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,6 @@
+-- L'indice è parziale, quindi i saga conclusi (la quasi totalità della tabella) non ne fanno parte.
+-- CONCURRENTLY non blocca le scritture durante la creazione; Flyway esegue la migrazione fuori transazione.
+-- Una creazione CONCURRENTLY fallita lascia l'indice INVALID con lo stesso nome: va eliminato prima di ricrearlo
+DROP INDEX CONCURRENTLY IF EXISTS ix_transfer_saga_state_deadline;
+CREATE INDEX CONCURRENTLY ix_transfer_saga_state_deadline ON transfer_saga (current_state, deadline)
+    WHERE current_state NOT IN ('COMPLETED', 'FAILED');
@@ -0,0 +1,5 @@
+-- Scadenza del passo corrente: lo sweeper cerca i saga attivi con deadline passata.
+-- Solo modifiche al catalogo (colonna nullable, default costante senza riscrittura della tabella):
+-- l'indice è in V6_1 (CONCURRENTLY) e le scadenze dei saga attivi esistenti in V6_2, a blocchi
+ALTER TABLE transfer_saga ADD COLUMN deadline TIMESTAMP(6);
+ALTER TABLE transfer_saga ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
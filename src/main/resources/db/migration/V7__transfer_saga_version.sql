@@ -0,0 +1,2 @@
+-- Colonna di versione per l'optimistic locking di JPA (@Version)
+ALTER TABLE transfer_saga ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
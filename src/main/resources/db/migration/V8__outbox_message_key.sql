@@ -0,0 +1,2 @@
+-- Chiave del record Kafka del comando: i comandi dello stesso saga finiscono nella stessa partizione
+ALTER TABLE outbox_message ADD COLUMN message_key VARCHAR(255);
@@ -0,0 +1,25 @@
+-- Indici della ricerca dei saga (GET /transfers). Ogni filtro ha un indice che restituisce le righe già
+-- nell'ordine della paginazione keyset (created_at DESC, id DESC): la scansione si ferma dopo una pagina
+-- e le letture sulla tabella sono al massimo limit + 1.
+-- CONCURRENTLY non blocca le scritture durante la creazione; Flyway esegue la migrazione fuori transazione.
+-- Ogni indice viene eliminato prima della creazione: una creazione CONCURRENTLY fallita lascia un indice INVALID
+-- con lo stesso nome, che IF NOT EXISTS salterebbe in silenzio alla nuova esecuzione
+DROP INDEX CONCURRENTLY IF EXISTS ix_transfer_saga_player_created;
+CREATE INDEX CONCURRENTLY ix_transfer_saga_player_created
+    ON transfer_saga (player_id, created_at DESC, id DESC);
+
+DROP INDEX CONCURRENTLY IF EXISTS ix_transfer_saga_from_club_created;
+CREATE INDEX CONCURRENTLY ix_transfer_saga_from_club_created
+    ON transfer_saga (from_club_id, created_at DESC, id DESC);
+
+DROP INDEX CONCURRENTLY IF EXISTS ix_transfer_saga_to_club_created;
+CREATE INDEX CONCURRENTLY ix_transfer_saga_to_club_created
+    ON transfer_saga (to_club_id, created_at DESC, id DESC);
+
+DROP INDEX CONCURRENTLY IF EXISTS ix_transfer_saga_state_created;
+CREATE INDEX CONCURRENTLY ix_transfer_saga_state_created
+    ON transfer_saga (current_state, created_at DESC, id DESC);
+
+DROP INDEX CONCURRENTLY IF EXISTS ix_transfer_saga_created;
+CREATE INDEX CONCURRENTLY ix_transfer_saga_created
+    ON transfer_saga (created_at DESC, id DESC);
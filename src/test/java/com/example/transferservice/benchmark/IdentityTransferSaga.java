@@ -0,0 +1,68 @@
+package com.example.transferservice.benchmark;
+
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.entity.UuidStringConverter;
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Stesse colonne di TransferSaga, ma con id IDENTITY: Hibernate deve eseguire ogni insert da solo per leggere
+ * l'id generato, quindi niente batch JDBC. Usata solo da TransferSagaInsertBenchmark
+ * (tabella in db/benchmark, profilo benchmark).
+ */
+@Entity
+@Table(name = "transfer_saga_identity_benchmark")
+public class IdentityTransferSaga {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Version
+    private long version;
+
+    @Convert(converter = UuidStringConverter.class)
+    @Column(nullable = false, updatable = false)
+    private String sagaId;
+    private Long playerId;
+    private Long fromClubId;
+    private Long toClubId;
+    private BigDecimal transferFee;
+
+    @Enumerated(EnumType.STRING)
+    private TransferSagaState currentState;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private String errorMessage;
+
+    @Column(nullable = false)
+    private boolean clubBudgetChecked;
+    @Column(nullable = false)
+    private boolean playerAvailabilityChecked;
+
+    private LocalDateTime deadline;
+    @Column(nullable = false)
+    private int attempts;
+
+    protected IdentityTransferSaga() {
+    }
+
+    IdentityTransferSaga(String sagaId, Long playerId, Long fromClubId, Long toClubId, BigDecimal transferFee,
+                         TransferSagaState currentState) {
+        this.sagaId = sagaId;
+        this.playerId = playerId;
+        this.fromClubId = fromClubId;
+        this.toClubId = toClubId;
+        this.transferFee = transferFee;
+        this.currentState = currentState;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+}
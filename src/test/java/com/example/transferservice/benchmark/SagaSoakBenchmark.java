@@ -0,0 +1,212 @@
+package com.example.transferservice.benchmark;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.integration.TestConfig;
+import com.example.transferservice.repository.TransferSagaRepository;
+import com.example.transferservice.simulation.SimulatedParticipants;
+import com.example.transferservice.simulation.SimulatedParticipants.Step;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Soak del saga senza infrastruttura esterna: H2 in memoria, broker Kafka embedded e servizi club e giocatore
+ * simulati con latenza e fallimenti (profilo test, {@link TestConfig}). Invia POST /transfers da N client
+ * concorrenti, attende che tutti i saga siano conclusi e riporta throughput, esiti e durata media.
+ * Verifica poi le compensazioni sullo stato dei partecipanti: un saga COMPLETED lascia il giocatore nel club
+ * di destinazione, uno FAILED nel club di origine. Un club non ripristinato indica un comando di compensazione
+ * fallito, che il saga non ritenta: viene riportato, non fa fallire il test.
+ * Parametri: -Dsoak.requests=5000 -Dsoak.concurrency=50 -Dsoak.timeout=5m e le proprietà simulation.*
+ * (es. -Dsimulation.update-club-budget.failure-rate=0.2); senza -D valgono i default di SOAK_DEFAULTS.
+ */
+// I livelli di log vanno fissati qui: il logging viene configurato prima delle proprietà dinamiche
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "transfer.saga.log.sample-rate=0",
+        "logging.level.com.example.transferservice=WARN",
+        "logging.level.com.example.transferservice.benchmark=INFO",
+        "logging.level.transfer.saga.events=OFF"})
+@ActiveProfiles("test")
+@EmbeddedKafka(kraft = true, partitions = 8, topics = {
+        "check-club-budget-request", "check-club-budget-response",
+        "check-player-availability-request", "check-player-availability-response",
+        "update-player-club-request", "update-player-club-response",
+        "update-club-budget-request", "update-club-budget-response",
+        "transfer-saga-state-changed"})
+@Import(TestConfig.class)
+@Slf4j
+public class SagaSoakBenchmark {
+
+    private static final Map<String, String> SOAK_DEFAULTS = Map.ofEntries(
+            Map.entry("simulation.check-club-budget.latency", "5ms"),
+            Map.entry("simulation.check-club-budget.jitter", "20ms"),
+            Map.entry("simulation.check-club-budget.failure-rate", "0.02"),
+            Map.entry("simulation.check-player-availability.latency", "5ms"),
+            Map.entry("simulation.check-player-availability.jitter", "20ms"),
+            Map.entry("simulation.check-player-availability.failure-rate", "0.02"),
+            Map.entry("simulation.update-player-club.latency", "10ms"),
+            Map.entry("simulation.update-player-club.jitter", "40ms"),
+            Map.entry("simulation.update-player-club.failure-rate", "0.02"),
+            Map.entry("simulation.update-club-budget.latency", "10ms"),
+            Map.entry("simulation.update-club-budget.jitter", "40ms"),
+            Map.entry("simulation.update-club-budget.failure-rate", "0.05"));
+
+    private static final long FROM_CLUB = 2L;
+    private static final long TO_CLUB = 3L;
+
+    @Autowired
+    private TransferSagaRepository transferSagaRepository;
+
+    @Autowired
+    private SimulatedParticipants participants;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @LocalServerPort
+    private int port;
+
+    // Le proprietà dinamiche hanno la precedenza sulle -D: i default vengono sostituiti dalle -D esplicite
+    @DynamicPropertySource
+    static void soakDefaults(DynamicPropertyRegistry registry) {
+        SOAK_DEFAULTS.forEach((key, value) -> registry.add(key, () -> System.getProperty(key, value)));
+    }
+
+    @Test
+    public void soak() throws Exception {
+        int requests = Integer.getInteger("soak.requests", 5_000);
+        int concurrency = Integer.getInteger("soak.concurrency", 50);
+        Duration timeout = Duration.parse("PT" + System.getProperty("soak.timeout", "5m").toUpperCase());
+
+        long start = System.nanoTime();
+        int accepted = submit(requests, concurrency);
+        awaitTerminal(timeout);
+        long elapsed = System.nanoTime() - start;
+        awaitQuietParticipants();
+
+        List<TransferSaga> sagas = transferSagaRepository.findAll();
+        Map<TransferSagaState, Long> outcomes = sagas.stream()
+                .collect(Collectors.groupingBy(TransferSaga::getCurrentState, TreeMap::new, Collectors.counting()));
+        Map<String, Long> failureReasons = sagas.stream()
+                .filter(saga -> saga.getCurrentState() == TransferSagaState.FAILED)
+                .collect(Collectors.groupingBy(saga -> saga.getErrorMessage().split(":")[0], TreeMap::new, Collectors.counting()));
+        long completedElsewhere = sagas.stream()
+                .filter(saga -> saga.getCurrentState() == TransferSagaState.COMPLETED)
+                .filter(saga -> !participants.playerClub(saga.getPlayerId()).equals(Optional.of(TO_CLUB)))
+                .count();
+        long notRestored = sagas.stream()
+                .filter(saga -> saga.getCurrentState() == TransferSagaState.FAILED)
+                .filter(saga -> participants.playerClub(saga.getPlayerId()).filter(club -> club != FROM_CLUB).isPresent())
+                .count();
+
+        log.info("richieste={} accettate={} concorrenza={} durata={} s throughput={} saga/s",
+                requests, accepted, concurrency, String.format("%.1f", seconds(elapsed)),
+                String.format("%.0f", accepted / seconds(elapsed)));
+        log.info("esiti: {}", outcomes);
+        log.info("cause di fallimento: {}", failureReasons);
+        for (TransferSagaState outcome : List.of(TransferSagaState.COMPLETED, TransferSagaState.FAILED)) {
+            Timer duration = meterRegistry.find("transfer.saga.duration").tag("outcome", outcome.name()).timer();
+            if (duration != null) {
+                log.info("durata {}: media={} ms max={} ms", outcome,
+                        String.format("%.1f", duration.mean(TimeUnit.MILLISECONDS)),
+                        String.format("%.1f", duration.max(TimeUnit.MILLISECONDS)));
+            }
+        }
+        log.info("comandi (fallimenti simulati): {}", Arrays.stream(Step.values())
+                .map(step -> step.getName() + "=" + participants.commands(step) + " (" + participants.failures(step) + ")")
+                .collect(Collectors.joining(", ")));
+        log.info("giocatori non ripristinati dopo la compensazione: {}", notRestored);
+
+        assertEquals(accepted, sagas.size());
+        assertEquals(accepted, outcomes.getOrDefault(TransferSagaState.COMPLETED, 0L)
+                + outcomes.getOrDefault(TransferSagaState.FAILED, 0L), "Saga non conclusi");
+        assertEquals(0, completedElsewhere, "Saga COMPLETED con il giocatore fuori dal club di destinazione");
+    }
+
+    private int submit(int requests, int concurrency) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger accepted = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            futures[i] = client.sendAsync(request(i + 1), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error == null && response.statusCode() == 202) {
+                            accepted.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).join();
+        return accepted.get();
+    }
+
+    // Un giocatore diverso per ogni richiesta: un secondo saga attivo sullo stesso giocatore verrebbe rifiutato con 409
+    private HttpRequest request(long playerId) {
+        String body = "{\"playerId\": " + playerId + ", \"fromClubId\": " + FROM_CLUB + ", \"toClubId\": " + TO_CLUB
+                + ", \"transferFee\": 1000000}";
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/transfers"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private void awaitTerminal(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!transferSagaRepository.countActiveByState().isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "Saga ancora attivi dopo " + timeout);
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+    }
+
+    // I comandi di compensazione partono dopo il commit dello stato FAILED: si attende che smettano di arrivare
+    private void awaitQuietParticipants() throws InterruptedException {
+        long previous = -1;
+        long current = totalCommands();
+        while (current != previous || participants.pendingReplies() > 0) {
+            TimeUnit.SECONDS.sleep(1);
+            previous = current;
+            current = totalCommands();
+        }
+    }
+
+    private long totalCommands() {
+        return Arrays.stream(Step.values()).mapToLong(participants::commands).sum();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.transferservice.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test di POST /transfers con N client concorrenti (default 1000 e 10000), contro l'applicazione
+ * avviata su PostgreSQL locale (profilo benchmark) e Kafka embedded.
+ * Modalità virtual thread (runtime Java 21): -Dspring.profiles.include=virtual-threads
+ * Parametri: -Dloadtest.concurrency=1000,10000 -Dloadtest.requests=20000
+ * Client, broker e applicazione condividono la JVM e le CPU: i risultati servono a confrontare le due modalità
+ * sulla stessa macchina, non come latenze assolute. Per quelle serve un generatore di carico separato.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EmbeddedKafka(kraft = true, partitions = 1)
+@ActiveProfiles("benchmark")
+@TestPropertySource(properties = {
+        "spring.cloud.stream.kafka.binder.brokers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "server.tomcat.max-connections=20000",
+        "logging.level.com.example.transferservice=WARN",
+        "logging.level.com.example.transferservice.benchmark=INFO"
+})
+@Slf4j
+public class TransferHttpLoadBenchmark {
+
+    // Giocatori sempre nuovi: un secondo saga attivo sullo stesso giocatore verrebbe rifiutato con 409
+    private final AtomicLong nextPlayer = new AtomicLong(System.currentTimeMillis() * 1_000);
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void postTransfers() throws Exception {
+        int requests = Integer.getInteger("loadtest.requests", 20_000);
+        String[] concurrencyLevels = System.getProperty("loadtest.concurrency", "1000,10000").split(",");
+
+        log.info("Modalità: {} thread, Java {}",
+                Boolean.getBoolean("spring.threads.virtual.enabled") || System.getProperty("spring.profiles.include", "").contains("virtual-threads")
+                        ? "virtual" : "platform",
+                Runtime.version());
+
+        // Riscaldamento di JIT, pool di connessioni e producer
+        run(100, 2_000);
+        for (String concurrency : concurrencyLevels) {
+            Result result = run(Integer.parseInt(concurrency.trim()), requests);
+            log.info("concorrenza={} richieste={} errori={} throughput={} req/s p50={} ms p99={} ms",
+                    result.concurrency, requests, result.errors, String.format("%.0f", result.throughput),
+                    String.format("%.1f", result.p50Millis), String.format("%.1f", result.p99Millis));
+        }
+    }
+
+    private Result run(int concurrency, int requests) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            futures[i] = client.sendAsync(request(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() != 202) {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).join();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new Result(concurrency,
+                errors.get(),
+                requests / (elapsed / 1_000_000_000.0),
+                latencies[(int) (requests * 0.50)] / 1_000_000.0,
+                latencies[(int) (requests * 0.99)] / 1_000_000.0);
+    }
+
+    private HttpRequest request() {
+        String body = "{\"playerId\": " + nextPlayer.incrementAndGet()
+                + ", \"fromClubId\": 2, \"toClubId\": 3, \"transferFee\": 1000000}";
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/transfers"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private record Result(int concurrency, int errors, double throughput, double p50Millis, double p99Millis) {
+    }
+}
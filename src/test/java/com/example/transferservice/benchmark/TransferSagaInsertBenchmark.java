@@ -0,0 +1,103 @@
+package com.example.transferservice.benchmark;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+
+/**
+ * Benchmark del throughput di inserimento dei saga (persist + flush), con id da sequenza pooled (TransferSaga)
+ * e con id IDENTITY (IdentityTransferSaga, copia della tabella con gli stessi indici): ogni strategia è
+ * un'esecuzione del test parametrico, con un proprio riepilogo nel log.
+ * Richiede un PostgreSQL locale (vedi application-benchmark.properties); le migrazioni Flyway
+ * vengono applicate all'avvio.
+ */
+@Slf4j
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("benchmark")
+public class TransferSagaInsertBenchmark {
+
+    private static final int SAGAS_PER_ROUND = 5_000;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+
+    enum IdGeneration {
+        POOLED_SEQUENCE(playerId -> TransferSaga.builder()
+                .sagaId(UUID.randomUUID().toString())
+                .playerId(playerId)
+                .fromClubId(1L)
+                .toClubId(2L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.STARTED)
+                .build()),
+        IDENTITY(playerId -> new IdentityTransferSaga(UUID.randomUUID().toString(), playerId, 1L, 2L,
+                new BigDecimal("1000000"), TransferSagaState.STARTED));
+
+        private final LongFunction<Object> saga;
+
+        IdGeneration(LongFunction<Object> saga) {
+            this.saga = saga;
+        }
+    }
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // Un saga attivo per giocatore (ux_transfer_saga_active_player): ogni saga ha un giocatore diverso
+    private long nextPlayerId;
+
+    @ParameterizedTest
+    @EnumSource(IdGeneration.class)
+    public void insertThroughput(IdGeneration idGeneration) {
+        Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            insertRound(idGeneration);
+        }
+
+        statistics.clear();
+        long elapsedNanos = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            elapsedNanos += insertRound(idGeneration);
+        }
+
+        long inserted = (long) SAGAS_PER_ROUND * MEASURED_ROUNDS;
+        log.info("{}: inseriti {} saga in {} ms, {} saga/s, {} statement JDBC preparati",
+                idGeneration,
+                inserted,
+                String.format("%.1f", elapsedNanos / 1_000_000.0),
+                String.format("%.0f", inserted / (elapsedNanos / 1_000_000_000.0)),
+                statistics.getPrepareStatementCount());
+    }
+
+    private long insertRound(IdGeneration idGeneration) {
+        List<Object> sagas = LongStream.range(0, SAGAS_PER_ROUND)
+                .mapToObj(i -> idGeneration.saga.apply(nextPlayerId++))
+                .toList();
+
+        long start = System.nanoTime();
+        sagas.forEach(entityManager::persist);
+        entityManager.flush();
+        long elapsed = System.nanoTime() - start;
+
+        entityManager.clear();
+        return elapsed;
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.transferservice.benchmark;
+
+import com.example.transferservice.TransferServiceApplication;
+import com.example.transferservice.messages.TransferSagaStateChanged;
+import com.example.transferservice.simulation.SimulatedParticipants;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Confronto dei profili di tuning sotto carico. Per ogni profilo avvia l'applicazione su PostgreSQL locale
+ * (profilo benchmark) e su un broker Kafka embedded condiviso, con {@link SimulatedParticipants} al posto dei servizi
+ * club e giocatore, e invia POST /transfers da N client concorrenti. Riporta throughput e percentili sia della
+ * risposta HTTP sia del saga fino a COMPLETED/FAILED, letto dal topic transfer-saga-state-changed.
+ * Parametri: -Dloadtest.profiles=default,low-latency,high-throughput -Dloadtest.concurrency=200
+ * -Dloadtest.requests=10000 (ogni profilo riceve prima 1000 richieste di riscaldamento)
+ */
+@Slf4j
+public class TuningProfileLoadBenchmark {
+
+    private static final Set<String> TERMINAL_STATES = Set.of("COMPLETED", "FAILED");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Giocatori sempre nuovi: un secondo saga attivo sullo stesso giocatore verrebbe rifiutato con 409
+    private final AtomicInteger nextPlayer = new AtomicInteger();
+    private final long playerIdBase = System.currentTimeMillis() * 1_000;
+
+    @Test
+    public void compareProfiles() throws Exception {
+        String[] profiles = System.getProperty("loadtest.profiles", "default,low-latency,high-throughput").split(",");
+        int concurrency = Integer.getInteger("loadtest.concurrency", 200);
+        int requests = Integer.getInteger("loadtest.requests", 10_000);
+
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, 8, SimulatedParticipants.TOPICS);
+        broker.afterPropertiesSet();
+        try {
+            // I partecipanti simulati rispondono ai comandi finché restano aperti: nel try servono solo per la chiusura
+            SimulatedParticipants participants = new SimulatedParticipants(broker.getBrokersAsString());
+            try (participants; SagaCompletions completions = new SagaCompletions(broker.getBrokersAsString())) {
+                List<String> report = new ArrayList<>();
+                for (String profile : profiles) {
+                    try (ConfigurableApplicationContext application = start(profile.trim(), broker.getBrokersAsString())) {
+                        int port = application.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                        run(port, completions, concurrency, 1_000);
+                        report.add(profile.trim() + ": " + run(port, completions, concurrency, requests));
+                    }
+                }
+                log.info("concorrenza={} richieste={}", concurrency, requests);
+                report.forEach(line -> log.info("{}", line));
+            }
+        } finally {
+            broker.destroy();
+        }
+    }
+
+    private ConfigurableApplicationContext start(String profile, String brokers) {
+        List<String> profiles = new ArrayList<>(List.of("benchmark"));
+        if (!"default".equals(profile)) {
+            profiles.add(profile);
+        }
+        // Argomenti da riga di comando: hanno la precedenza su application.properties e sui profili.
+        // Il test binder è nel classpath dei test: il binder Kafka va scelto esplicitamente
+        return new SpringApplicationBuilder(TransferServiceApplication.class)
+                .profiles(profiles.toArray(String[]::new))
+                .run("--server.port=0",
+                        "--spring.cloud.stream.default-binder=kafka",
+                        "--spring.cloud.stream.kafka.binder.brokers=" + brokers,
+                        "--spring.kafka.bootstrap-servers=" + brokers,
+                        "--transfer.saga.log.sample-rate=0",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--logging.level.com.example.transferservice=WARN",
+                        // Stesso contesto di logging dell'applicazione: il report del benchmark resta a INFO
+                        "--logging.level.com.example.transferservice.benchmark=INFO");
+    }
+
+    private String run(int port, SagaCompletions completions, int concurrency, int requests) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        completions.reset();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            futures[i] = client.sendAsync(request(port), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() != 202) {
+                            errors.incrementAndGet();
+                        } else {
+                            completions.started(sagaIdOf(response.body()), sent);
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).join();
+        long httpElapsed = System.nanoTime() - start;
+        long[] sagaLatencies = completions.await(requests - errors.get(), Duration.ofSeconds(120));
+        long sagaElapsed = completions.lastCompletedAt() - start;
+
+        return String.format("HTTP errori=%d throughput=%.0f req/s p50=%.1f p95=%.1f p99=%.1f ms | "
+                        + "saga conclusi=%d falliti=%d throughput=%.0f saga/s p50=%.1f p95=%.1f p99=%.1f ms",
+                errors.get(), requests / seconds(httpElapsed),
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+                sagaLatencies.length, completions.failed(), sagaLatencies.length / seconds(sagaElapsed),
+                percentile(sagaLatencies, 0.50), percentile(sagaLatencies, 0.95), percentile(sagaLatencies, 0.99));
+    }
+
+    private HttpRequest request(int port) {
+        String body = "{\"playerId\": " + (playerIdBase + nextPlayer.incrementAndGet())
+                + ", \"fromClubId\": 2, \"toClubId\": 3, \"transferFee\": 1000000}";
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/transfers"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private String sagaIdOf(String body) {
+        try {
+            return objectMapper.readTree(body).get("sagaId").asText();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    private static double percentile(long[] nanos, double quantile) {
+        if (nanos.length == 0) {
+            return Double.NaN;
+        }
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))] / 1_000_000.0;
+    }
+
+    /**
+     * Tempo dall'invio della POST alla notifica di stato conclusivo, per i saga avviati nel giro corrente.
+     * La notifica può arrivare prima della risposta HTTP: in quel caso resta in attesa dell'avvio.
+     */
+    private static class SagaCompletions implements AutoCloseable {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final KafkaConsumer<String, byte[]> consumer;
+        private final Thread worker;
+        private final Map<String, Long> startedAt = new HashMap<>();
+        private final Map<String, Completion> completedBeforeStart = new HashMap<>();
+        private final List<Long> latencies = new ArrayList<>();
+        private int failed;
+        private long lastCompletedAt;
+
+        SagaCompletions(String brokers) {
+            consumer = new KafkaConsumer<>(Map.of(
+                    ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                    ConsumerConfig.GROUP_ID_CONFIG, "load-benchmark-completions",
+                    ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"),
+                    new StringDeserializer(), new ByteArrayDeserializer());
+            consumer.subscribe(List.of("transfer-saga-state-changed"));
+            worker = new Thread(this::listen, "load-benchmark-completions");
+            worker.start();
+        }
+
+        private void listen() {
+            try {
+                while (true) {
+                    for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                        TransferSagaStateChanged change = objectMapper.readValue(record.value(), TransferSagaStateChanged.class);
+                        if (TERMINAL_STATES.contains(change.getState())) {
+                            completed(change.getSagaId(), new Completion(System.nanoTime(), "FAILED".equals(change.getState())));
+                        }
+                    }
+                }
+            } catch (WakeupException e) {
+                // chiusura
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                consumer.close();
+            }
+        }
+
+        synchronized void reset() {
+            startedAt.clear();
+            completedBeforeStart.clear();
+            latencies.clear();
+            failed = 0;
+        }
+
+        synchronized void started(String sagaId, long sentAt) {
+            Completion completion = completedBeforeStart.remove(sagaId);
+            if (completion != null) {
+                record(sentAt, completion);
+            } else {
+                startedAt.put(sagaId, sentAt);
+            }
+        }
+
+        private synchronized void completed(String sagaId, Completion completion) {
+            Long sentAt = startedAt.remove(sagaId);
+            if (sentAt != null) {
+                record(sentAt, completion);
+            } else {
+                completedBeforeStart.put(sagaId, completion);
+            }
+        }
+
+        private void record(long sentAt, Completion completion) {
+            latencies.add(completion.at() - sentAt);
+            lastCompletedAt = Math.max(lastCompletedAt, completion.at());
+            if (completion.failed()) {
+                failed++;
+            }
+            notifyAll();
+        }
+
+        synchronized long[] await(int expected, Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (latencies.size() < expected && System.nanoTime() < deadline) {
+                TimeUnit.NANOSECONDS.timedWait(this, deadline - System.nanoTime());
+            }
+            return latencies.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        synchronized int failed() {
+            return failed;
+        }
+
+        synchronized long lastCompletedAt() {
+            return lastCompletedAt;
+        }
+
+        @Override
+        public void close() {
+            consumer.wakeup();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                // Il consumer viene chiuso dal worker; l'interruzione resta visibile al chiamante
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private record Completion(long at, boolean failed) {
+        }
+    }
+}
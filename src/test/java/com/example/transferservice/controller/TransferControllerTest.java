@@ -1,23 +1,51 @@
 package com.example.transferservice.controller;
 
+import com.example.transferservice.dto.TransferSearchCriteria;
+import com.example.transferservice.dto.TransferSearchCursor;
+import com.example.transferservice.dto.TransferSearchResponse;
+import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.service.TransferConflictException;
+import com.example.transferservice.service.TransferReservations;
 import com.example.transferservice.service.TransferService;
+import com.example.transferservice.service.TransferStatusSubscriptions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.CannotCreateTransactionException;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(TransferController.class)
+@Import(TransferExecutorConfig.class)
 public class TransferControllerTest {
 
     @Autowired
@@ -26,6 +54,15 @@ public class TransferControllerTest {
     @MockBean
     private TransferService transferService;
 
+    @MockBean
+    private TransferStatusSubscriptions transferStatusSubscriptions;
+
+    @MockBean
+    private TransferReservations transferReservations;
+
+    @SpyBean
+    private TransferExecutor transferExecutor;
+
     @Test
     public void testInitiateTransfer() throws Exception {
         // Given
@@ -34,11 +71,167 @@ public class TransferControllerTest {
                 .thenReturn(sagaId);
 
         // When & Then
-        mockMvc.perform(post("/transfers")
+        performAsync(post("/transfers")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content("{\"playerId\": 1, \"fromClubId\": 2, \"toClubId\": 3, \"transferFee\": 1000000}"))
                 .andExpect(status().isAccepted())
                 .andExpect(jsonPath("$.sagaId").value(sagaId))
                 .andExpect(jsonPath("$.message").value("Trasferimento avviato"));
     }
+
+    @Test
+    public void testInitiateTransfers() throws Exception {
+        // Given
+        when(transferService.initiateTransfers(anyList()))
+                .thenReturn(List.of("saga-1", "saga-2"));
+
+        // When & Then
+        performAsync(post("/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"playerId\": 1, \"fromClubId\": 2, \"toClubId\": 3, \"transferFee\": 1000000},"
+                        + "{\"playerId\": 4, \"fromClubId\": 5, \"toClubId\": 6, \"transferFee\": 2000000}]"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$[0]").value("saga-1"))
+                .andExpect(jsonPath("$[1]").value("saga-2"));
+    }
+
+    @Test
+    public void testInitiateTransfers_EmptyBatch() throws Exception {
+        performAsync(post("/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testInitiateTransfer_ConnectionPoolExhausted() throws Exception {
+        // Given
+        when(transferService.initiateTransfer(eq(1L), eq(2L), eq(3L), any(BigDecimal.class)))
+                .thenThrow(new CannotCreateTransactionException("Connection is not available"));
+
+        // When & Then
+        performAsync(post("/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"playerId\": 1, \"fromClubId\": 2, \"toClubId\": 3, \"transferFee\": 1000000}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    public void testInitiateTransfer_ExecutorSaturated() throws Exception {
+        // Given
+        doThrow(new TaskRejectedException("Coda piena")).when(transferExecutor).execute(any(Runnable.class));
+
+        // When & Then: rifiutata prima di avviare la richiesta asincrona
+        mockMvc.perform(post("/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"playerId\": 1, \"fromClubId\": 2, \"toClubId\": 3, \"transferFee\": 1000000}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        verifyNoInteractions(transferService);
+    }
+
+    @Test
+    public void testInitiateTransfer_PlayerAlreadyInFlight() throws Exception {
+        // Given
+        when(transferReservations.activeSagaOf(1L)).thenReturn(Optional.of("saga-attivo"));
+
+        // When & Then
+        performAsync(post("/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"playerId\": 1, \"fromClubId\": 2, \"toClubId\": 3, \"transferFee\": 1000000}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.sagaId").value("saga-attivo"));
+        verifyNoInteractions(transferService);
+    }
+
+    @Test
+    public void testInitiateTransfers_ConflictInBatch() throws Exception {
+        // Given
+        when(transferService.initiateTransfers(anyList())).thenThrow(new TransferConflictException(1L, null));
+
+        // When & Then
+        performAsync(post("/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"playerId\": 1, \"fromClubId\": 2, \"toClubId\": 3, \"transferFee\": 1000000}]"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Trasferimento già in corso per il giocatore 1"));
+    }
+
+    @Test
+    public void testStreamTransferStatus() throws Exception {
+        // Given
+        String sagaId = "test-saga-id";
+        TransferStatusResponse completed = TransferStatusResponse.builder().sagaId(sagaId).state("COMPLETED").build();
+        when(transferService.getTransferStatus(sagaId)).thenReturn(completed);
+        when(transferStatusSubscriptions.subscribe(eq(sagaId), any())).thenAnswer(invocation -> {
+            TransferStatusSubscriptions.Subscriber subscriber = invocation.getArgument(1);
+            subscriber.send(completed);
+            subscriber.complete();
+            return Optional.of(mock(TransferStatusSubscriptions.Subscription.class));
+        });
+
+        // When
+        MvcResult result = mockMvc.perform(get("/transfers/{sagaId}/events", sagaId))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string("event:status\ndata:{\"sagaId\":\"test-saga-id\",\"playerId\":null,"
+                        + "\"fromClubId\":null,\"toClubId\":null,\"transferFee\":null,\"state\":\"COMPLETED\","
+                        + "\"errorMessage\":null,\"createdAt\":null,\"updatedAt\":null}\n\n"));
+    }
+
+    @Test
+    public void testStreamTransferStatus_TooManySubscribers() throws Exception {
+        // Given
+        when(transferStatusSubscriptions.subscribe(eq("test-saga-id"), any())).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(get("/transfers/{sagaId}/events", "test-saga-id"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
+    @Test
+    public void testSearchTransfers() throws Exception {
+        // Given
+        TransferSearchCriteria criteria = TransferSearchCriteria.builder()
+                .fromClubId(2L)
+                .state(TransferSagaState.FAILED)
+                .createdFrom(LocalDateTime.of(2024, 5, 1, 0, 0))
+                .build();
+        TransferSearchCursor after = new TransferSearchCursor(LocalDateTime.of(2024, 5, 2, 10, 0), 42L);
+        when(transferService.searchTransfers(criteria, after, 20))
+                .thenReturn(new TransferSearchResponse(List.of(), null));
+
+        // When & Then
+        mockMvc.perform(get("/transfers")
+                .param("fromClubId", "2")
+                .param("state", "FAILED")
+                .param("createdFrom", "2024-05-01T00:00:00")
+                .param("cursor", after.encode())
+                .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+
+    @Test
+    public void testSearchTransfers_InvalidCursorOrLimit() throws Exception {
+        mockMvc.perform(get("/transfers").param("cursor", "non-un-cursore"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/transfers").param("limit", "100000"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(transferService);
+    }
+
+    // POST di creazione: la risposta arriva dal pool transferExecutor con un dispatch asincrono
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult started = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
 }
@@ -0,0 +1,32 @@
+package com.example.transferservice.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferExecutorConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(TaskExecutionAutoConfiguration.class))
+            .withUserConfiguration(TransferExecutorConfig.class);
+
+    @Test
+    public void testTransferExecutor_KeepsBootApplicationTaskExecutor() {
+        contextRunner.run(context -> {
+            assertThat(context).hasSingleBean(TransferExecutor.class);
+            assertThat(context).hasBean("transferExecutor");
+            assertThat(context).hasBean("applicationTaskExecutor");
+
+            // L'unico Executor del contesto è quello di Boot, non il pool della creazione dei saga
+            Executor applicationTaskExecutor = context.getBean(Executor.class);
+            assertThat(applicationTaskExecutor).isSameAs(context.getBean("applicationTaskExecutor"));
+            assertThat(((ThreadPoolTaskExecutor) applicationTaskExecutor).getThreadNamePrefix()).isEqualTo("task-");
+        });
+    }
+}
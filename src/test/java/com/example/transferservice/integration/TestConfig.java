@@ -1,23 +1,39 @@
 package com.example.transferservice.integration;
 
+import com.example.transferservice.simulation.SimulatedParticipants;
+import com.example.transferservice.simulation.SimulatedParticipants.Behavior;
+import com.example.transferservice.simulation.SimulatedParticipants.Step;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.core.env.Environment;
 
-import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 
+/**
+ * Servizi club e giocatore simulati sul broker avviato da @EmbeddedKafka della classe di test.
+ * Comportamento per passo da simulation.&lt;passo&gt;.latency, .jitter e .failure-rate (application-test.properties,
+ * sovrascrivibili con -D); simulation.club-budget e simulation.seed valgono per tutti i passi.
+ */
 @TestConfiguration
 @Profile("test")
 public class TestConfig {
 
-    @Bean
-    public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName("org.postgresql.Driver");
-        dataSource.setUrl("jdbc:postgresql://postgres.minikube.local:31000/transfer_db");
-        dataSource.setUsername("postgres");
-        dataSource.setPassword("postgres");
-        return dataSource;
+    @Bean(destroyMethod = "close")
+    public SimulatedParticipants simulatedParticipants(Environment environment) {
+        Map<Step, Behavior> behaviors = new EnumMap<>(Step.class);
+        for (Step step : Step.values()) {
+            String prefix = "simulation." + step.getName() + ".";
+            behaviors.put(step, new Behavior(
+                    environment.getProperty(prefix + "latency", Duration.class, Duration.ZERO),
+                    environment.getProperty(prefix + "jitter", Duration.class, Duration.ZERO),
+                    environment.getProperty(prefix + "failure-rate", Double.class, 0.0)));
+        }
+        return new SimulatedParticipants(environment.getRequiredProperty("spring.embedded.kafka.brokers"), behaviors,
+                environment.getProperty("simulation.club-budget", BigDecimal.class),
+                environment.getProperty("simulation.seed", Long.class, 42L));
     }
 }
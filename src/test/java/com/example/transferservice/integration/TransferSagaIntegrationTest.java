@@ -3,14 +3,17 @@ package com.example.transferservice.integration;
 import com.example.transferservice.controller.TransferRequest;
 import com.example.transferservice.entity.TransferSaga;
 import com.example.transferservice.repository.TransferSagaRepository;
+import com.example.transferservice.simulation.SimulatedParticipants;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.test.context.EmbeddedKafka;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
@@ -21,11 +24,18 @@ import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test di integrazione per il flusso completo del Saga.
- * Nota: Questo test richiede che tutti i servizi siano in esecuzione e configurati correttamente.
- * È necessario avere PostgreSQL e Kafka in esecuzione con le configurazioni specificate.
+ * Nota: non servono servizi esterni. Il profilo test usa H2 in memoria e il broker Kafka embedded,
+ * i servizi club e giocatore sono simulati da {@link SimulatedParticipants} (TestConfig).
  */
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
+@EmbeddedKafka(kraft = true, partitions = 8, topics = {
+        "check-club-budget-request", "check-club-budget-response",
+        "check-player-availability-request", "check-player-availability-response",
+        "update-player-club-request", "update-player-club-response",
+        "update-club-budget-request", "update-club-budget-response",
+        "transfer-saga-state-changed"})
+@Import(TestConfig.class)
 public class TransferSagaIntegrationTest {
 
     @Autowired
@@ -95,7 +105,7 @@ public class TransferSagaIntegrationTest {
         Long playerId = 1L;
         Long fromClubId = 2L;
         Long toClubId = 3L;
-        BigDecimal transferFee = new BigDecimal("100000000"); // Importo molto alto che dovrebbe fallire
+        BigDecimal transferFee = new BigDecimal("100000000"); // Oltre simulation.club-budget: la verifica del budget fallisce
 
         // Crea la richiesta di trasferimento
         TransferRequest request = new TransferRequest(playerId, fromClubId, toClubId, transferFee);
@@ -0,0 +1,77 @@
+package com.example.transferservice.messages.codec;
+
+import com.example.transferservice.messages.*;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SagaBinaryCodecTest {
+
+    private static final String SAGA_ID = UUID.randomUUID().toString();
+
+    @Test
+    public void testRoundTrip_AllMessageTypes() {
+        // Given
+        List<Object> messages = List.of(
+                new CheckClubBudgetRequest(SAGA_ID, 2L, new BigDecimal("1000000.50")),
+                new CheckClubBudgetResponse(SAGA_ID, 2L, false, "Budget insufficiente"),
+                new CheckPlayerAvailabilityRequest(SAGA_ID, 1L, 3L),
+                new CheckPlayerAvailabilityResponse(SAGA_ID, 1L, true, null),
+                new UpdatePlayerClubRequest(SAGA_ID, 1L, 3L),
+                new UpdatePlayerClubResponse(SAGA_ID, -1L, true, null),
+                new UpdateClubBudgetRequest(SAGA_ID, Long.MAX_VALUE, new BigDecimal("-1E+3")),
+                new UpdateClubBudgetResponse(SAGA_ID, 2L, false, "Errore nell'aggiornamento"),
+                new TransferSagaStateChanged(SAGA_ID, "COMPLETED", UUID.randomUUID().toString()));
+
+        for (Object message : messages) {
+            // When
+            Object decoded = SagaBinaryCodec.decode(SagaBinaryCodec.encode(message), message.getClass());
+
+            // Then
+            assertEquals(message, decoded);
+        }
+    }
+
+    @Test
+    public void testRoundTrip_NonUuidSagaIdAndNulls() {
+        // Given
+        CheckClubBudgetRequest request = new CheckClubBudgetRequest("test-saga-id", null, null);
+        CheckClubBudgetResponse uppercase = new CheckClubBudgetResponse(SAGA_ID.toUpperCase(), 2L, true, null);
+
+        // When & Then
+        assertEquals(request, SagaBinaryCodec.decode(SagaBinaryCodec.encode(request), CheckClubBudgetRequest.class));
+        assertEquals(uppercase, SagaBinaryCodec.decode(SagaBinaryCodec.encode(uppercase), CheckClubBudgetResponse.class));
+        assertEquals(new CheckClubBudgetRequest(),
+                SagaBinaryCodec.decode(SagaBinaryCodec.encode(new CheckClubBudgetRequest()), CheckClubBudgetRequest.class));
+    }
+
+    @Test
+    public void testEncode_FixedLayoutSize() {
+        // Given
+        UpdateClubBudgetRequest request = new UpdateClubBudgetRequest(SAGA_ID, 2L, new BigDecimal("1000000"));
+
+        // When
+        byte[] payload = SagaBinaryCodec.encode(request);
+
+        // Then: versione, tipo, UUID (1 + 16), clubId (1 + 1), fee (1 + 1 + 1 + 3)
+        assertEquals(27, payload.length);
+    }
+
+    @Test
+    public void testDecode_RejectsWrongTypeAndTruncatedPayload() {
+        // Given
+        byte[] payload = SagaBinaryCodec.encode(new UpdatePlayerClubRequest(SAGA_ID, 1L, 3L));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class,
+                () -> SagaBinaryCodec.decode(payload, CheckPlayerAvailabilityRequest.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> SagaBinaryCodec.decode(Arrays.copyOf(payload, payload.length - 1), UpdatePlayerClubRequest.class));
+        assertFalse(SagaBinaryCodec.supports(String.class));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.transferservice.repository;
+
+import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Instradamento primario/replica di ReadReplicaDataSourceConfig su due database H2 distinti.
+ * Lo schema viene generato solo sul primario: una lettura finita sulla replica fallisce per la tabella mancante.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary_${random.uuid};MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "transfer.datasource.replica.enabled=true",
+        "transfer.datasource.replica.url=jdbc:h2:mem:replica_${random.uuid};MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "transfer.datasource.replica.username=sa",
+        "transfer.datasource.replica.password=",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"}, showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ReadReplicaDataSourceConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TransferSagaRepositoryReplicaTest {
+
+    @Autowired
+    private TransferSagaRepository transferSagaRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnly;
+
+    private String sagaId;
+
+    @BeforeEach
+    public void setUp() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        sagaId = UUID.randomUUID().toString();
+        transferSagaRepository.save(TransferSaga.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.STARTED)
+                .build());
+    }
+
+    @Test
+    public void testFindPrimaryStatusBySagaId_InsideReadOnlyTransactionReadsPrimary() {
+        // When: chiamata dentro una transazione read-only, che altrimenti andrebbe sulla replica
+        Optional<TransferStatusResponse> status = readOnly.execute(tx -> transferSagaRepository.findPrimaryStatusBySagaId(sagaId));
+
+        // Then
+        assertNotNull(status);
+        assertTrue(status.isPresent());
+        assertEquals("STARTED", status.get().getState());
+    }
+
+    @Test
+    public void testFindStatusBySagaId_InsideReadOnlyTransactionReadsReplica() {
+        // When / Then: la replica non ha lo schema
+        assertThrows(DataAccessException.class,
+                () -> readOnly.execute(tx -> transferSagaRepository.findStatusBySagaId(sagaId)));
+    }
+
+    @Test
+    public void testFindStatusBySagaId_OutsideTransactionReadsReplica() {
+        // When / Then: la transazione read-only dichiarata sul metodo basta per la replica
+        assertThrows(DataAccessException.class, () -> transferSagaRepository.findStatusBySagaId(sagaId));
+    }
+}
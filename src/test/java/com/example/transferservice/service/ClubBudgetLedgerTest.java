@@ -0,0 +1,132 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.ClubBudgetSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClubBudgetLedgerTest {
+
+    private static final Long CLUB_ID = 2L;
+
+    private ClubBudgetLedger clubBudgetLedger;
+
+    @BeforeEach
+    public void setUp() {
+        clubBudgetLedger = new ClubBudgetLedger(new SimpleMeterRegistry(), true, new BigDecimal("0.5"));
+    }
+
+    @Test
+    public void testReserve_WithoutSnapshotGoesRemote() {
+        // When
+        boolean covered = clubBudgetLedger.reserve(saga("saga-1", "100"));
+
+        // Then: l'importo resta comunque prenotato per le decisioni successive
+        assertFalse(covered);
+        assertEquals(0, new BigDecimal("100").compareTo(clubBudgetLedger.reservedFor(CLUB_ID)));
+    }
+
+    @Test
+    public void testReserve_CoveredWithinHeadroomOnly() {
+        // Given: metà di 1000 utilizzabile localmente
+        clubBudgetLedger.onSnapshot(snapshot("1000"));
+
+        // When & Then
+        assertTrue(clubBudgetLedger.reserve(saga("saga-1", "300")));
+        assertTrue(clubBudgetLedger.reserve(saga("saga-2", "200")));
+        assertFalse(clubBudgetLedger.reserve(saga("saga-3", "1")));
+    }
+
+    @Test
+    public void testReserve_ConcurrentReservationsNeverOverspend() throws Exception {
+        // Given
+        clubBudgetLedger.onSnapshot(snapshot("2000"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Boolean>> reservations = IntStream.range(0, 200)
+                .<Callable<Boolean>>mapToObj(i -> () -> clubBudgetLedger.reserve(saga("saga-" + i, "10")))
+                .toList();
+
+        // When
+        long covered;
+        try {
+            covered = executor.invokeAll(reservations).stream()
+                    .filter(ClubBudgetLedgerTest::get)
+                    .count();
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then: 1000 utilizzabili, 10 per saga
+        assertEquals(100, covered);
+    }
+
+    @Test
+    public void testOnTransferSagaChanged_FailedReleasesCompletedWaitsForSnapshot() {
+        // Given
+        clubBudgetLedger.onSnapshot(snapshot("1000"));
+        TransferSaga failed = saga("saga-1", "300");
+        TransferSaga completed = saga("saga-2", "200");
+        clubBudgetLedger.reserve(failed);
+        clubBudgetLedger.reserve(completed);
+
+        // When
+        failed.setCurrentState(TransferSagaState.FAILED);
+        completed.setCurrentState(TransferSagaState.COMPLETED);
+        clubBudgetLedger.onTransferSagaChanged(new TransferSagaChangedEvent(failed));
+        clubBudgetLedger.onTransferSagaChanged(new TransferSagaChangedEvent(completed));
+
+        // Then: l'addebito del saga completato resta prenotato finché lo snapshot non lo comprende
+        assertEquals(0, new BigDecimal("200").compareTo(clubBudgetLedger.reservedFor(CLUB_ID)));
+        clubBudgetLedger.onSnapshot(snapshot("800"));
+        assertEquals(0, BigDecimal.ZERO.compareTo(clubBudgetLedger.reservedFor(CLUB_ID)));
+    }
+
+    @Test
+    public void testReserve_DisabledNeverDecidesLocally() {
+        // Given
+        ClubBudgetLedger disabled = new ClubBudgetLedger(new SimpleMeterRegistry(), false, BigDecimal.ONE);
+        disabled.onSnapshot(snapshot("1000"));
+
+        // When & Then
+        assertFalse(disabled.reserve(saga("saga-1", "1")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(disabled.reservedFor(CLUB_ID)));
+    }
+
+    private static boolean get(Future<Boolean> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private TransferSaga saga(String sagaId, String fee) {
+        return TransferSaga.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .fromClubId(CLUB_ID)
+                .toClubId(3L)
+                .transferFee(new BigDecimal(fee))
+                .currentState(TransferSagaState.STARTED)
+                .build();
+    }
+
+    private ClubBudgetSnapshot snapshot(String availableBudget) {
+        return ClubBudgetSnapshot.builder()
+                .clubId(CLUB_ID)
+                .availableBudget(new BigDecimal(availableBudget))
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.OutboxMessage;
+import com.example.transferservice.repository.OutboxMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OutboxRelayTest {
+
+    @Mock
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Mock
+    private BindingServiceProperties bindingServiceProperties;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(outboxRelay, "batchSize", 500);
+        ReflectionTestUtils.setField(outboxRelay, "sendTimeoutMs", 1000L);
+    }
+
+    @Test
+    public void testRelayBatch_DeletesAfterAck() {
+        // Given
+        List<OutboxMessage> batch = List.of(outboxMessage(1L), outboxMessage(2L));
+        when(outboxMessageRepository.lockNextBatch(500)).thenReturn(batch);
+        when(bindingServiceProperties.getBindingDestination("checkClubBudgetRequest-out-0"))
+                .thenReturn("check-club-budget-request");
+        when(kafkaTemplate.send(any(Message.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        int relayed = outboxRelay.relayBatch();
+
+        // Then
+        assertEquals(2, relayed);
+        verify(kafkaTemplate, times(2)).send(any(Message.class));
+        verify(kafkaTemplate, times(1)).flush();
+        verify(outboxMessageRepository, times(1)).deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRelayBatch_SendsMessageKey() {
+        // Given
+        when(outboxMessageRepository.lockNextBatch(500)).thenReturn(List.of(outboxMessage(1L)));
+        when(bindingServiceProperties.getBindingDestination("checkClubBudgetRequest-out-0"))
+                .thenReturn("check-club-budget-request");
+        when(kafkaTemplate.send(any(Message.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        outboxRelay.relayBatch();
+
+        // Then
+        ArgumentCaptor<Message<byte[]>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(kafkaTemplate).send(sent.capture());
+        assertEquals("check-club-budget-request", sent.getValue().getHeaders().get(KafkaHeaders.TOPIC));
+        assertEquals("7f1c1f5e-1d1b-4b8e-9d8a-0a4c2b7e6f10", sent.getValue().getHeaders().get(KafkaHeaders.KEY));
+    }
+
+    @Test
+    public void testRelayBatch_KeepsRowsWhenBrokerFails() {
+        // Given
+        when(outboxMessageRepository.lockNextBatch(500)).thenReturn(List.of(outboxMessage(1L)));
+        when(bindingServiceProperties.getBindingDestination("checkClubBudgetRequest-out-0"))
+                .thenReturn("check-club-budget-request");
+        when(kafkaTemplate.send(any(Message.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker non raggiungibile")));
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> outboxRelay.relayBatch());
+        verify(outboxMessageRepository, never()).deleteAllByIdInBatch(anyList());
+    }
+
+    private OutboxMessage outboxMessage(Long id) {
+        return OutboxMessage.builder()
+                .id(id)
+                .sagaId("7f1c1f5e-1d1b-4b8e-9d8a-0a4c2b7e6f10")
+                .bindingName("checkClubBudgetRequest-out-0")
+                .messageKey("7f1c1f5e-1d1b-4b8e-9d8a-0a4c2b7e6f10")
+                .contentType("application/json")
+                .payload("{}".getBytes())
+                .build();
+    }
+}
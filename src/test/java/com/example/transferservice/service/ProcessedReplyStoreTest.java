@@ -0,0 +1,61 @@
+package com.example.transferservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProcessedReplyStoreTest {
+
+    private ProcessedReplyStore processedReplyStore;
+
+    @BeforeEach
+    public void setUp() {
+        processedReplyStore = new ProcessedReplyStore(new SimpleMeterRegistry(), 1000, Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testMarkProcessed_WithoutTransaction() {
+        // Given
+        ProcessedReplyStore.ReplyKey replyKey = replyKey("saga-1");
+
+        // When
+        processedReplyStore.markProcessed(replyKey);
+
+        // Then
+        assertTrue(processedReplyStore.isProcessed(replyKey));
+        assertFalse(processedReplyStore.isProcessed(replyKey("saga-2")));
+    }
+
+    @Test
+    public void testMarkProcessed_OnlyAfterCommit() {
+        // Given
+        ProcessedReplyStore.ReplyKey replyKey = replyKey("saga-1");
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        processedReplyStore.markProcessed(replyKey);
+
+        // Then
+        assertFalse(processedReplyStore.isProcessed(replyKey));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertTrue(processedReplyStore.isProcessed(replyKey));
+    }
+
+    private static ProcessedReplyStore.ReplyKey replyKey(String sagaId) {
+        return TransferSagaManager.replyKey(TransferSagaDefinition.UPDATE_CLUB_BUDGET_REPLY, sagaId);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.repository.TransferSagaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SagaArchiverTest {
+
+    @Mock
+    private TransferSagaRepository transferSagaRepository;
+
+    @Mock
+    private TransferSagaMetrics transferSagaMetrics;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private SagaArchiver sagaArchiver;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(sagaArchiver, "retention", Duration.ofDays(30));
+        ReflectionTestUtils.setField(sagaArchiver, "batchSize", 1000);
+    }
+
+    @Test
+    public void testArchiveBatch_MovesTerminalSagasAndRecordsCount() {
+        // Given
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(30);
+        when(transferSagaRepository.archiveTerminalCreatedBefore(cutoff, 1000)).thenReturn(420);
+
+        // When
+        int archived = sagaArchiver.archiveBatch(cutoff);
+
+        // Then
+        assertEquals(420, archived);
+        verify(transferSagaMetrics).recordArchived(420);
+    }
+
+    @Test
+    public void testArchive_RepeatsFullBatchesWithSameCutoff() {
+        // Given
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        when(transferSagaRepository.archiveTerminalCreatedBefore(any(LocalDateTime.class), eq(1000)))
+                .thenReturn(1000, 1000, 17);
+
+        // When
+        LocalDateTime before = LocalDateTime.now().minusDays(30);
+        sagaArchiver.archive();
+
+        // Then
+        verify(transferSagaRepository, times(3)).archiveTerminalCreatedBefore(
+                argThat(cutoff -> !cutoff.isBefore(before) && cutoff.isBefore(LocalDateTime.now().minusDays(29))),
+                eq(1000));
+        verify(transactionManager, times(3)).commit(any());
+        verify(transferSagaMetrics).recordArchived(17);
+    }
+}
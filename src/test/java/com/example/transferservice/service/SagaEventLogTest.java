@@ -0,0 +1,80 @@
+package com.example.transferservice.service;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SagaEventLogTest {
+
+    @Test
+    public void testIsSampled_SameDecisionForSameSaga() {
+        SagaEventLog first = new SagaEventLog(0.5);
+        SagaEventLog second = new SagaEventLog(0.5);
+
+        IntStream.range(0, 1000).mapToObj(i -> UUID.randomUUID().toString())
+                .forEach(sagaId -> assertEquals(first.isSampled(sagaId), second.isSampled(sagaId)));
+    }
+
+    @Test
+    public void testIsSampled_RateBounds() {
+        SagaEventLog never = new SagaEventLog(0.0);
+        SagaEventLog always = new SagaEventLog(1.0);
+
+        IntStream.range(0, 1000).mapToObj(i -> UUID.randomUUID().toString()).forEach(sagaId -> {
+            assertFalse(never.isSampled(sagaId));
+            assertTrue(always.isSampled(sagaId));
+        });
+        assertFalse(always.isSampled(null));
+    }
+
+    @Test
+    public void testIsSampled_ApproximatesRate() {
+        SagaEventLog sagaEventLog = new SagaEventLog(0.01);
+
+        long sampled = IntStream.range(0, 100_000).mapToObj(i -> UUID.randomUUID().toString())
+                .filter(sagaEventLog::isSampled)
+                .count();
+
+        assertTrue(sampled > 500 && sampled < 1500, "Saga campionati: " + sampled);
+    }
+
+    @Test
+    public void testFailed_SnapshotsSagaAtCallTime() {
+        SagaEventLog sagaEventLog = new SagaEventLog(0.0);
+        Logger logger = (Logger) LoggerFactory.getLogger("transfer.saga.events");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            TransferSaga saga = TransferSaga.builder()
+                    .sagaId(UUID.randomUUID().toString())
+                    .currentState(TransferSagaState.CLUB_BUDGET_CHECKED)
+                    .build();
+
+            sagaEventLog.failed(saga, "Giocatore non disponibile");
+            // L'appender asincrono formatta l'evento più tardi, quando il saga è già andato avanti
+            saga.setCurrentState(TransferSagaState.FAILED);
+
+            Object logged = appender.list.get(0).getKeyValuePairs().stream()
+                    .filter(pair -> pair.key.equals("saga"))
+                    .map(pair -> pair.value)
+                    .findFirst()
+                    .orElseThrow();
+            assertTrue(logged instanceof String);
+            assertTrue(((String) logged).contains("currentState=CLUB_BUDGET_CHECKED"), (String) logged);
+        } finally {
+            logger.detachAppender(appender);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.repository.TransferSagaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SagaTimeoutSweeperTest {
+
+    @Mock
+    private TransferSagaRepository transferSagaRepository;
+
+    @Mock
+    private TransferSagaManager transferSagaManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private SagaTimeoutSweeper sagaTimeoutSweeper;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(sagaTimeoutSweeper, "batchSize", 200);
+    }
+
+    @Test
+    public void testSweep_HandlesEveryExpiredSaga() {
+        // Given
+        TransferSaga first = expiredSaga(1L, "saga-1", TransferSagaState.STARTED);
+        TransferSaga second = expiredSaga(2L, "saga-2", TransferSagaState.PLAYER_CLUB_UPDATED);
+        when(transferSagaRepository.findExpiredAfter(any(LocalDateTime.class), any(LocalDateTime.class), eq(0L), eq(200)))
+                .thenReturn(List.of(first, second));
+        when(transferSagaRepository.lockExpired(eq(1L), any(LocalDateTime.class))).thenReturn(Optional.of(first));
+        when(transferSagaRepository.lockExpired(eq(2L), any(LocalDateTime.class))).thenReturn(Optional.of(second));
+
+        // When
+        sagaTimeoutSweeper.sweep();
+
+        // Then: un commit per saga
+        verify(transferSagaManager).handleTimeout(first);
+        verify(transferSagaManager).handleTimeout(second);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    public void testSweep_FailingSagaDoesNotRollBackTheOthers() {
+        // Given
+        TransferSaga poison = expiredSaga(1L, "saga-1", TransferSagaState.STARTED);
+        TransferSaga other = expiredSaga(2L, "saga-2", TransferSagaState.CLUB_BUDGET_CHECKED);
+        when(transferSagaRepository.findExpiredAfter(any(LocalDateTime.class), any(LocalDateTime.class), eq(0L), eq(200)))
+                .thenReturn(List.of(poison, other));
+        when(transferSagaRepository.lockExpired(eq(1L), any(LocalDateTime.class))).thenReturn(Optional.of(poison));
+        when(transferSagaRepository.lockExpired(eq(2L), any(LocalDateTime.class))).thenReturn(Optional.of(other));
+        doThrow(new IllegalStateException("outbox non disponibile")).when(transferSagaManager).handleTimeout(poison);
+
+        // When
+        sagaTimeoutSweeper.sweep();
+
+        // Then: annullato solo il saga in errore, l'altro viene confermato
+        verify(transferSagaManager).handleTimeout(other);
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    public void testSweep_CursorMovesPastFailedSagas() {
+        // Given: blocchi da un saga, il primo sempre in errore
+        ReflectionTestUtils.setField(sagaTimeoutSweeper, "batchSize", 1);
+        TransferSaga poison = expiredSaga(1L, "saga-1", TransferSagaState.STARTED);
+        TransferSaga other = expiredSaga(2L, "saga-2", TransferSagaState.STARTED);
+        when(transferSagaRepository.findExpiredAfter(any(LocalDateTime.class), any(LocalDateTime.class), eq(0L), eq(1)))
+                .thenReturn(List.of(poison));
+        when(transferSagaRepository.findExpiredAfter(any(LocalDateTime.class), eq(poison.getDeadline()), eq(1L), eq(1)))
+                .thenReturn(List.of(other));
+        when(transferSagaRepository.findExpiredAfter(any(LocalDateTime.class), eq(other.getDeadline()), eq(2L), eq(1)))
+                .thenReturn(List.of());
+        when(transferSagaRepository.lockExpired(eq(1L), any(LocalDateTime.class))).thenReturn(Optional.of(poison));
+        when(transferSagaRepository.lockExpired(eq(2L), any(LocalDateTime.class))).thenReturn(Optional.of(other));
+        doThrow(new IllegalStateException("outbox non disponibile")).when(transferSagaManager).handleTimeout(poison);
+
+        // When
+        sagaTimeoutSweeper.sweep();
+
+        // Then
+        verify(transferSagaManager).handleTimeout(other);
+    }
+
+    @Test
+    public void testSweep_SkipsSagaLockedElsewhere() {
+        // Given
+        TransferSaga saga = expiredSaga(1L, "saga-1", TransferSagaState.STARTED);
+        when(transferSagaRepository.findExpiredAfter(any(LocalDateTime.class), any(LocalDateTime.class), eq(0L), eq(200)))
+                .thenReturn(List.of(saga));
+        when(transferSagaRepository.lockExpired(eq(1L), any(LocalDateTime.class))).thenReturn(Optional.empty());
+
+        // When
+        sagaTimeoutSweeper.sweep();
+
+        // Then
+        verifyNoInteractions(transferSagaManager);
+    }
+
+    @Test
+    public void testSweep_NothingExpired() {
+        // Given
+        when(transferSagaRepository.findExpiredAfter(any(LocalDateTime.class), any(LocalDateTime.class), eq(0L), eq(200)))
+                .thenReturn(List.of());
+
+        // When
+        sagaTimeoutSweeper.sweep();
+
+        // Then
+        verifyNoInteractions(transferSagaManager);
+    }
+
+    private TransferSaga expiredSaga(Long id, String sagaId, TransferSagaState state) {
+        return TransferSaga.builder()
+                .id(id)
+                .sagaId(sagaId)
+                .currentState(state)
+                .deadline(LocalDateTime.of(2024, 5, 1, 10, 0).plusSeconds(id))
+                .build();
+    }
+}
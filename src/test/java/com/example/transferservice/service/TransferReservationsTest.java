@@ -0,0 +1,99 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.TransferSagaStateChanged;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransferReservationsTest {
+
+    private TransferReservations transferReservations;
+
+    @BeforeEach
+    public void setUp() {
+        transferReservations = new TransferReservations(new SimpleMeterRegistry(), 1000, Duration.ofMinutes(30));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testReserve_SecondSagaForSamePlayerConflicts() {
+        // When
+        Optional<String> first = transferReservations.reserve(1L, "saga-1");
+        Optional<String> second = transferReservations.reserve(1L, "saga-2");
+        Optional<String> otherPlayer = transferReservations.reserve(2L, "saga-3");
+
+        // Then
+        assertTrue(first.isEmpty());
+        assertEquals(Optional.of("saga-1"), second);
+        assertTrue(otherPlayer.isEmpty());
+        assertEquals(Optional.of("saga-1"), transferReservations.activeSagaOf(1L));
+    }
+
+    @Test
+    public void testOnTransferSagaChanged_ReleasesOnlyOnTerminalState() {
+        // Given
+        transferReservations.reserve(1L, "saga-1");
+
+        // When & Then
+        transferReservations.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.PLAYER_CLUB_UPDATED)));
+        assertEquals(Optional.of("saga-1"), transferReservations.activeSagaOf(1L));
+
+        transferReservations.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.FAILED)));
+        assertTrue(transferReservations.activeSagaOf(1L).isEmpty());
+        assertTrue(transferReservations.reserve(1L, "saga-2").isEmpty());
+    }
+
+    @Test
+    public void testOnRemoteStateChanged_ReleasesCompletedSaga() {
+        // Given
+        transferReservations.reserve(1L, "saga-1");
+
+        // When
+        transferReservations.onRemoteStateChanged(TransferSagaStateChanged.builder()
+                .sagaId("saga-1")
+                .state("COMPLETED")
+                .sourceInstanceId("altra-istanza")
+                .build());
+
+        // Then
+        assertTrue(transferReservations.activeSagaOf(1L).isEmpty());
+    }
+
+    @Test
+    public void testReserve_ReleasedWhenTransactionRollsBack() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        transferReservations.reserve(1L, "saga-1");
+
+        // When
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // Then
+        assertTrue(transferReservations.activeSagaOf(1L).isEmpty());
+    }
+
+    private TransferSaga saga(TransferSagaState state) {
+        return TransferSaga.builder()
+                .sagaId("saga-1")
+                .playerId(1L)
+                .currentState(state)
+                .build();
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.TransferSagaStateChanged;
+import com.example.transferservice.repository.TransferSagaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferSagaCacheTest {
+
+    private static final String SAGA_ID = "7f1c1f5e-1d1b-4b8e-9d8a-0a4c2b7e6f10";
+
+    @Mock
+    private TransferSagaRepository transferSagaRepository;
+
+    @Mock
+    private StreamBridge streamBridge;
+
+    private TransferSagaCache transferSagaCache;
+
+    @BeforeEach
+    public void setUp() {
+        transferSagaCache = new TransferSagaCache(transferSagaRepository, streamBridge, new SimpleMeterRegistry(),
+                1000, Duration.ofSeconds(30), Duration.ofMinutes(10), false);
+    }
+
+    @Test
+    public void testGet_ReadThrough() {
+        // Given
+        when(transferSagaRepository.findStatusBySagaId(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.STARTED)));
+
+        // When
+        Optional<TransferStatusResponse> first = transferSagaCache.get(SAGA_ID);
+        Optional<TransferStatusResponse> second = transferSagaCache.get(SAGA_ID);
+
+        // Then
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        verify(transferSagaRepository, times(1)).findStatusBySagaId(SAGA_ID);
+        verify(transferSagaRepository, never()).findPrimaryStatusBySagaId(SAGA_ID);
+    }
+
+    @Test
+    public void testGet_WithReplicaRereadsActiveStateFromPrimary() {
+        // Given: la replica è indietro di una transizione
+        transferSagaCache = new TransferSagaCache(transferSagaRepository, streamBridge, new SimpleMeterRegistry(),
+                1000, Duration.ofSeconds(30), Duration.ofMinutes(10), true);
+        when(transferSagaRepository.findStatusBySagaId(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.STARTED)));
+        when(transferSagaRepository.findPrimaryStatusBySagaId(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.COMPLETED)));
+
+        // When
+        TransferStatusResponse status = transferSagaCache.get(SAGA_ID).orElseThrow();
+
+        // Then
+        assertEquals("COMPLETED", status.getState());
+        assertTrue(transferSagaCache.isKnownTerminal(SAGA_ID));
+    }
+
+    @Test
+    public void testGet_WithReplicaTrustsTerminalState() {
+        // Given
+        transferSagaCache = new TransferSagaCache(transferSagaRepository, streamBridge, new SimpleMeterRegistry(),
+                1000, Duration.ofSeconds(30), Duration.ofMinutes(10), true);
+        when(transferSagaRepository.findStatusBySagaId(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.FAILED)));
+
+        // When
+        TransferStatusResponse status = transferSagaCache.get(SAGA_ID).orElseThrow();
+
+        // Then
+        assertEquals("FAILED", status.getState());
+        verify(transferSagaRepository, never()).findPrimaryStatusBySagaId(SAGA_ID);
+    }
+
+    @Test
+    public void testGet_FallsBackToArchive() {
+        // Given
+        when(transferSagaRepository.findStatusBySagaId(SAGA_ID)).thenReturn(Optional.empty());
+        when(transferSagaRepository.findArchivedBySagaId(SAGA_ID)).thenReturn(Optional.of(saga(TransferSagaState.COMPLETED)));
+
+        // When
+        Optional<TransferStatusResponse> first = transferSagaCache.get(SAGA_ID);
+        Optional<TransferStatusResponse> second = transferSagaCache.get(SAGA_ID);
+
+        // Then
+        assertEquals("COMPLETED", first.orElseThrow().getState());
+        assertTrue(second.isPresent());
+        assertTrue(transferSagaCache.isKnownTerminal(SAGA_ID));
+        verify(transferSagaRepository, times(1)).findArchivedBySagaId(SAGA_ID);
+    }
+
+    @Test
+    public void testOnTransferSagaChanged_WriteThroughAndNotify() {
+        // Given
+        TransferSagaChangedEvent event = new TransferSagaChangedEvent(saga(TransferSagaState.COMPLETED));
+
+        // When
+        transferSagaCache.collectStateChange(event);
+        transferSagaCache.onTransferSagaChanged(event);
+
+        // Then
+        assertTrue(transferSagaCache.isKnownTerminal(SAGA_ID));
+        assertEquals("COMPLETED", transferSagaCache.get(SAGA_ID).orElseThrow().getState());
+        verifyNoInteractions(transferSagaRepository);
+
+        ArgumentCaptor<TransferSagaStateChanged> notification = ArgumentCaptor.forClass(TransferSagaStateChanged.class);
+        verify(streamBridge).send(eq("transferSagaStateChanged-out-0"), notification.capture());
+        assertEquals("COMPLETED", notification.getValue().getState());
+    }
+
+    @Test
+    public void testCollectStateChange_NotifiesLastStateOncePerTransaction() {
+        // Given
+        TransferSaga saga = saga(TransferSagaState.CLUB_BUDGET_UPDATED);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When: due salvataggi dello stesso saga nella stessa transazione
+            transferSagaCache.collectStateChange(new TransferSagaChangedEvent(saga));
+            saga.setCurrentState(TransferSagaState.COMPLETED);
+            transferSagaCache.collectStateChange(new TransferSagaChangedEvent(saga));
+            verifyNoInteractions(streamBridge);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Then
+        ArgumentCaptor<TransferSagaStateChanged> notification = ArgumentCaptor.forClass(TransferSagaStateChanged.class);
+        verify(streamBridge, times(1)).send(eq("transferSagaStateChanged-out-0"), notification.capture());
+        assertEquals("COMPLETED", notification.getValue().getState());
+    }
+
+    @Test
+    public void testCollectStateChange_SendFailureIsNotPropagated() {
+        // Given
+        when(streamBridge.send(eq("transferSagaStateChanged-out-0"), any())).thenThrow(new IllegalStateException("broker non raggiungibile"));
+
+        // When / Then
+        assertDoesNotThrow(() -> transferSagaCache.collectStateChange(new TransferSagaChangedEvent(saga(TransferSagaState.FAILED))));
+    }
+
+    @Test
+    public void testOnTransferSagaChanged_UsesStateAtPublishTime() {
+        // Given
+        TransferSaga saga = saga(TransferSagaState.CLUB_BUDGET_UPDATED);
+        TransferSagaChangedEvent event = new TransferSagaChangedEvent(saga);
+        saga.setCurrentState(TransferSagaState.COMPLETED);
+
+        // When
+        transferSagaCache.onTransferSagaChanged(event);
+
+        // Then
+        assertEquals("CLUB_BUDGET_UPDATED", transferSagaCache.get(SAGA_ID).orElseThrow().getState());
+    }
+
+    @Test
+    public void testOnTransferSagaChanged_KeepsNewerCommittedState() {
+        // Given: un lettore concorrente ha già caricato dal database lo stato committato, versione successiva
+        TransferSaga committed = saga(TransferSagaState.PLAYER_CLUB_UPDATED);
+        committed.setVersion(2);
+        when(transferSagaRepository.findStatusBySagaId(SAGA_ID)).thenReturn(Optional.of(TransferService.toStatusResponse(committed)));
+        transferSagaCache.get(SAGA_ID);
+        TransferSaga previous = saga(TransferSagaState.PLAYER_AVAILABILITY_CHECKED);
+        previous.setVersion(1);
+
+        // When: arriva in ritardo l'evento after-commit della transazione precedente
+        transferSagaCache.onTransferSagaChanged(new TransferSagaChangedEvent(previous));
+
+        // Then
+        assertEquals("PLAYER_CLUB_UPDATED", transferSagaCache.get(SAGA_ID).orElseThrow().getState());
+    }
+
+    @Test
+    public void testOnRemoteStateChanged_EvictsOnlyForOtherInstances() {
+        // Given
+        TransferSagaChangedEvent event = new TransferSagaChangedEvent(saga(TransferSagaState.CLUB_BUDGET_CHECKED));
+        transferSagaCache.collectStateChange(event);
+        transferSagaCache.onTransferSagaChanged(event);
+        ArgumentCaptor<TransferSagaStateChanged> ownNotification = ArgumentCaptor.forClass(TransferSagaStateChanged.class);
+        verify(streamBridge).send(eq("transferSagaStateChanged-out-0"), ownNotification.capture());
+
+        // When: la propria notifica non invalida, quella di un'altra istanza sì
+        transferSagaCache.onRemoteStateChanged(ownNotification.getValue());
+        transferSagaCache.get(SAGA_ID);
+        verifyNoInteractions(transferSagaRepository);
+
+        transferSagaCache.onRemoteStateChanged(TransferSagaStateChanged.builder()
+                .sagaId(SAGA_ID)
+                .state("COMPLETED")
+                .sourceInstanceId("altra-istanza")
+                .build());
+
+        // Then
+        assertFalse(transferSagaCache.isKnownTerminal(SAGA_ID));
+        transferSagaCache.get(SAGA_ID);
+        verify(transferSagaRepository, times(1)).findStatusBySagaId(SAGA_ID);
+    }
+
+    private TransferStatusResponse status(TransferSagaState state) {
+        return TransferService.toStatusResponse(saga(state));
+    }
+
+    private TransferSaga saga(TransferSagaState state) {
+        return TransferSaga.builder()
+                .sagaId(SAGA_ID)
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(state)
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.messages.CheckClubBudgetResponse;
+import com.example.transferservice.messages.UpdateClubBudgetResponse;
+import com.example.transferservice.messages.UpdatePlayerClubResponse;
+import com.example.transferservice.saga.SagaDefinition;
+import com.example.transferservice.saga.SagaEffects;
+import com.example.transferservice.saga.SagaEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static com.example.transferservice.service.TransferSagaDefinition.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferSagaDefinitionTest {
+
+    @Mock
+    private SagaEffects<TransferSagaState, TransferSaga> effects;
+
+    private SagaEngine<TransferSagaState, TransferSaga> engine;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new SagaEngine<>(DEFINITION, effects);
+    }
+
+    @Test
+    public void testMayAccept_OnlyFromStatesThatCanStillAwaitTheReply() {
+        // Verifica del budget: attesa in STARTED e CHECKS_PENDING, mai dopo
+        assertTrue(engine.mayAccept(CHECK_CLUB_BUDGET_REPLY, TransferSagaState.STARTED));
+        assertTrue(engine.mayAccept(CHECK_CLUB_BUDGET_REPLY, TransferSagaState.CHECKS_PENDING));
+        assertFalse(engine.mayAccept(CHECK_CLUB_BUDGET_REPLY, TransferSagaState.CLUB_BUDGET_CHECKED));
+
+        // Aggiornamento del club: da uno stato precedente la risposta può ancora arrivare a destinazione
+        assertTrue(engine.mayAccept(UPDATE_PLAYER_CLUB_REPLY, TransferSagaState.STARTED));
+        assertTrue(engine.mayAccept(UPDATE_PLAYER_CLUB_REPLY, TransferSagaState.PLAYER_AVAILABILITY_CHECKED));
+        assertFalse(engine.mayAccept(UPDATE_PLAYER_CLUB_REPLY, TransferSagaState.PLAYER_CLUB_UPDATED));
+
+        for (TransferSagaState terminal : new TransferSagaState[]{TransferSagaState.COMPLETED, TransferSagaState.FAILED}) {
+            assertFalse(engine.mayAccept(CHECK_PLAYER_AVAILABILITY_REPLY, terminal));
+            assertFalse(engine.mayAccept(UPDATE_CLUB_BUDGET_REPLY, terminal));
+        }
+    }
+
+    @Test
+    public void testReplyFailure_AfterPlayerClubUpdated_CompensatesPlayerClub() {
+        // Given
+        TransferSaga saga = saga(TransferSagaState.PLAYER_CLUB_UPDATED);
+
+        // When
+        boolean applied = engine.onReply(UPDATE_CLUB_BUDGET_REPLY, saga,
+                new UpdateClubBudgetResponse("saga-1", 1L, false, "Budget insufficiente"));
+
+        // Then
+        assertTrue(applied);
+        assertEquals("Impossibile aggiornare il budget del club: Budget insufficiente", saga.getErrorMessage());
+        verify(effects).transition(saga, TransferSagaState.FAILED);
+        verify(effects).send(saga, RESTORE_PLAYER_CLUB);
+    }
+
+    @Test
+    public void testReplyFailure_OnPlayerClubUpdate_NoCompensation() {
+        // Given
+        TransferSaga saga = saga(TransferSagaState.PLAYER_AVAILABILITY_CHECKED);
+
+        // When
+        engine.onReply(UPDATE_PLAYER_CLUB_REPLY, saga, new UpdatePlayerClubResponse("saga-1", 7L, false, "Errore"));
+
+        // Then
+        verify(effects).transition(saga, TransferSagaState.FAILED);
+        verify(effects, never()).send(any(), any());
+    }
+
+    @Test
+    public void testTimeout_WithPlayerClubUpdatePending_Compensates() {
+        // Given: l'aggiornamento del club è stato inviato ma il suo esito non è noto
+        TransferSaga saga = saga(TransferSagaState.PLAYER_AVAILABILITY_CHECKED);
+        saga.setAttempts(3);
+
+        // When
+        engine.onTimeout(saga, 3);
+
+        // Then
+        verify(effects).timedOut(saga, "fail");
+        verify(effects).transition(saga, TransferSagaState.FAILED);
+        verify(effects).send(saga, RESTORE_PLAYER_CLUB);
+    }
+
+    @Test
+    public void testJoin_WaitsForAllChecksAndDiscardsRepeatedPart() {
+        // Given
+        TransferSaga saga = saga(TransferSagaState.CHECKS_PENDING);
+        CheckClubBudgetResponse response = new CheckClubBudgetResponse("saga-1", 1L, true, null);
+
+        // When
+        boolean first = engine.onReply(CHECK_CLUB_BUDGET_REPLY, saga, response);
+        boolean repeated = engine.onReply(CHECK_CLUB_BUDGET_REPLY, saga, response);
+
+        // Then
+        assertTrue(first);
+        assertFalse(repeated);
+        assertTrue(saga.isClubBudgetChecked());
+        verify(effects).step(saga, "checkReceived");
+        verify(effects).save(saga);
+        verify(effects, never()).transition(any(), any());
+    }
+
+    @Test
+    public void testBuild_RejectsInvalidTable() {
+        assertThrows(IllegalStateException.class, () -> SagaDefinition
+                .<TransferSagaState, TransferSaga>builder(TransferSagaState.class, TransferSagaState.FAILED)
+                .state(TransferSagaState.STARTED)
+                .state(TransferSagaState.STARTED));
+
+        assertThrows(IllegalStateException.class, () -> SagaDefinition
+                .<TransferSagaState, TransferSaga>builder(TransferSagaState.class, TransferSagaState.FAILED)
+                .state(TransferSagaState.CLUB_BUDGET_UPDATED)
+                .sends(UPDATE_CLUB_BUDGET)
+                .then(TransferSagaState.COMPLETED, "completed")
+                .build());
+    }
+
+    private static TransferSaga saga(TransferSagaState state) {
+        return TransferSaga.builder()
+                .sagaId("saga-1")
+                .currentState(state)
+                .build();
+    }
+}
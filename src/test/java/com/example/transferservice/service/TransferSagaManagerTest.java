@@ -1,21 +1,31 @@
 package com.example.transferservice.service;
 
+import com.example.transferservice.dto.TransferStatusResponse;
 import com.example.transferservice.entity.TransferSaga;
 import com.example.transferservice.entity.TransferSaga.TransferSagaState;
 import com.example.transferservice.messages.*;
 import com.example.transferservice.repository.TransferSagaRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -26,11 +36,35 @@ public class TransferSagaManagerTest {
     private TransferSagaRepository transferSagaRepository;
 
     @Mock
-    private StreamBridge streamBridge;
+    private SagaCommandPublisher sagaCommandPublisher;
+
+    @Mock
+    private TransferSagaCache transferSagaCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransferSagaMetrics transferSagaMetrics;
+
+    @Mock
+    private ProcessedReplyStore processedReplyStore;
+
+    @Mock
+    private ClubBudgetLedger clubBudgetLedger;
+
+    @Mock
+    private SagaEventLog sagaEventLog;
 
     @InjectMocks
     private TransferSagaManager transferSagaManager;
 
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(transferSagaManager, "stepTimeout", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(transferSagaManager, "maxAttempts", 3);
+    }
+
     @Test
     public void testStartTransferSaga() {
         // Given
@@ -43,13 +77,66 @@ public class TransferSagaManagerTest {
                 .currentState(TransferSagaState.STARTED)
                 .build();
         
-        when(streamBridge.send(eq("checkClubBudgetRequest-out-0"), any(CheckClubBudgetRequest.class))).thenReturn(true);
         
         // When
+        transferSagaManager.initializeTransferSaga(saga);
         transferSagaManager.startTransferSaga(saga);
         
+        // Then: stato e scadenza sono decisi prima dell'insert, l'avvio accoda solo i comandi
+        assertEquals(TransferSagaState.STARTED, saga.getCurrentState());
+        assertNotNull(saga.getDeadline());
+        verify(sagaCommandPublisher, times(1)).send(eq("checkClubBudgetRequest-out-0"), sagaWithId("test-saga-id"), any(CheckClubBudgetRequest.class));
+        verifyNoInteractions(transferSagaRepository, eventPublisher);
+    }
+
+    @Test
+    public void testStartTransferSaga_BudgetCoveredByLocalLedger() {
+        // Given
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId("test-saga-id")
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.STARTED)
+                .build();
+        when(clubBudgetLedger.reserve(saga)).thenReturn(true);
+
+        // When
+        transferSagaManager.initializeTransferSaga(saga);
+        transferSagaManager.startTransferSaga(saga);
+
         // Then
-        verify(streamBridge, times(1)).send(eq("checkClubBudgetRequest-out-0"), any(CheckClubBudgetRequest.class));
+        assertEquals(TransferSagaState.CLUB_BUDGET_CHECKED, saga.getCurrentState());
+        assertNotNull(saga.getDeadline());
+        verifyNoInteractions(transferSagaRepository);
+        verify(sagaCommandPublisher, never()).send(eq("checkClubBudgetRequest-out-0"), any(), any());
+        verify(sagaCommandPublisher).send(eq("checkPlayerAvailabilityRequest-out-0"), sagaWithId("test-saga-id"), any(CheckPlayerAvailabilityRequest.class));
+    }
+
+    @Test
+    public void testStartTransferSaga_ParallelChecksWithBudgetCoveredByLocalLedger() {
+        // Given
+        ReflectionTestUtils.setField(transferSagaManager, "parallelChecks", true);
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId("test-saga-id")
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.STARTED)
+                .build();
+        when(clubBudgetLedger.reserve(saga)).thenReturn(true);
+
+        // When
+        transferSagaManager.initializeTransferSaga(saga);
+        transferSagaManager.startTransferSaga(saga);
+
+        // Then: resta da attendere solo la verifica del giocatore
+        assertEquals(TransferSagaState.CHECKS_PENDING, saga.getCurrentState());
+        assertTrue(saga.isClubBudgetChecked());
+        verify(sagaCommandPublisher, never()).send(eq("checkClubBudgetRequest-out-0"), any(), any());
+        verify(sagaCommandPublisher).send(eq("checkPlayerAvailabilityRequest-out-0"), sagaWithId("test-saga-id"), any(CheckPlayerAvailabilityRequest.class));
     }
 
     @Test
@@ -73,7 +160,6 @@ public class TransferSagaManagerTest {
         
         when(transferSagaRepository.findBySagaId(sagaId)).thenReturn(Optional.of(saga));
         when(transferSagaRepository.save(any(TransferSaga.class))).thenReturn(saga);
-        when(streamBridge.send(eq("checkPlayerAvailabilityRequest-out-0"), any(CheckPlayerAvailabilityRequest.class))).thenReturn(true);
         
         // When
         transferSagaManager.handleCheckClubBudgetResponse(response);
@@ -81,7 +167,9 @@ public class TransferSagaManagerTest {
         // Then
         verify(transferSagaRepository, times(1)).findBySagaId(sagaId);
         verify(transferSagaRepository, times(1)).save(any(TransferSaga.class));
-        verify(streamBridge, times(1)).send(eq("checkPlayerAvailabilityRequest-out-0"), any(CheckPlayerAvailabilityRequest.class));
+        verify(sagaCommandPublisher, times(1)).send(eq("checkPlayerAvailabilityRequest-out-0"), sagaWithId(sagaId), any(CheckPlayerAvailabilityRequest.class));
+        verify(transferSagaMetrics).recordParticipantResponse(eq("club"), eq("checkClubBudget"), eq(true), any());
+        verify(transferSagaMetrics).recordTransition(eq(saga), eq(TransferSagaState.CLUB_BUDGET_CHECKED), any());
         assertEquals(TransferSagaState.CLUB_BUDGET_CHECKED, saga.getCurrentState());
     }
 
@@ -114,7 +202,7 @@ public class TransferSagaManagerTest {
         // Then
         verify(transferSagaRepository, times(1)).findBySagaId(sagaId);
         verify(transferSagaRepository, times(1)).save(any(TransferSaga.class));
-        verify(streamBridge, never()).send(eq("checkPlayerAvailabilityRequest-out-0"), any(CheckPlayerAvailabilityRequest.class));
+        verify(sagaCommandPublisher, never()).send(eq("checkPlayerAvailabilityRequest-out-0"), sagaWithId(sagaId), any(CheckPlayerAvailabilityRequest.class));
         assertEquals(TransferSagaState.FAILED, saga.getCurrentState());
     }
 
@@ -140,7 +228,6 @@ public class TransferSagaManagerTest {
         
         when(transferSagaRepository.findBySagaId(sagaId)).thenReturn(Optional.of(saga));
         when(transferSagaRepository.save(any(TransferSaga.class))).thenReturn(saga);
-        when(streamBridge.send(eq("updatePlayerClubRequest-out-0"), any(UpdatePlayerClubRequest.class))).thenReturn(true);
         
         // When
         transferSagaManager.handleUpdateClubBudgetResponse(response);
@@ -148,7 +235,305 @@ public class TransferSagaManagerTest {
         // Then
         verify(transferSagaRepository, times(1)).findBySagaId(sagaId);
         verify(transferSagaRepository, times(1)).save(any(TransferSaga.class));
-        verify(streamBridge, times(1)).send(eq("updatePlayerClubRequest-out-0"), any(UpdatePlayerClubRequest.class));
+        verify(sagaCommandPublisher, times(1)).send(eq("updatePlayerClubRequest-out-0"), sagaWithId(sagaId), any(UpdatePlayerClubRequest.class));
+        assertEquals(TransferSagaState.FAILED, saga.getCurrentState());
+    }
+
+    @Test
+    public void testHandleCheckClubBudgetResponses_Batch() {
+        // Given
+        TransferSaga firstSaga = TransferSaga.builder()
+                .sagaId("saga-1")
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.STARTED)
+                .build();
+        TransferSaga secondSaga = TransferSaga.builder()
+                .sagaId("saga-2")
+                .playerId(4L)
+                .fromClubId(5L)
+                .toClubId(6L)
+                .transferFee(new BigDecimal("2000000"))
+                .currentState(TransferSagaState.STARTED)
+                .build();
+
+        List<CheckClubBudgetResponse> responses = List.of(
+                CheckClubBudgetResponse.builder().sagaId("saga-1").clubId(2L).budgetAvailable(true).build(),
+                CheckClubBudgetResponse.builder().sagaId("saga-2").clubId(5L).budgetAvailable(false)
+                        .errorMessage("Budget insufficiente").build(),
+                CheckClubBudgetResponse.builder().sagaId("saga-sconosciuto").clubId(7L).budgetAvailable(true).build());
+
+        when(transferSagaRepository.findAllBySagaIdIn(List.of("saga-1", "saga-2", "saga-sconosciuto")))
+                .thenReturn(List.of(firstSaga, secondSaga));
+
+        // When
+        transferSagaManager.handleCheckClubBudgetResponses(responses);
+
+        // Then
+        verify(transferSagaRepository, times(1)).findAllBySagaIdIn(anyList());
+        verify(transferSagaRepository, never()).findBySagaId(anyString());
+        verify(sagaCommandPublisher, times(1)).send(eq("checkPlayerAvailabilityRequest-out-0"), sagaWithId("saga-1"), any(CheckPlayerAvailabilityRequest.class));
+        verify(sagaCommandPublisher, never()).send(eq("checkPlayerAvailabilityRequest-out-0"), sagaWithId("saga-2"), any(CheckPlayerAvailabilityRequest.class));
+        assertEquals(TransferSagaState.CLUB_BUDGET_CHECKED, firstSaga.getCurrentState());
+        assertEquals(TransferSagaState.FAILED, secondSaga.getCurrentState());
+    }
+
+    @Test
+    public void testHandleCheckClubBudgetResponse_LateReplyRejectedFromCacheWithoutDatabase() {
+        // Given: il saga in cache è già oltre la verifica del budget, la risposta è una riconsegna tardiva
+        String sagaId = "test-saga-id";
+        CheckClubBudgetResponse response = CheckClubBudgetResponse.builder()
+                .sagaId(sagaId)
+                .clubId(2L)
+                .budgetAvailable(true)
+                .build();
+        when(transferSagaCache.peek(sagaId)).thenReturn(Optional.of(status(sagaId, TransferSagaState.PLAYER_AVAILABILITY_CHECKED)));
+
+        // When
+        transferSagaManager.handleCheckClubBudgetResponse(response);
+        transferSagaManager.handleCheckClubBudgetResponses(List.of(response));
+
+        // Then
+        verifyNoInteractions(transferSagaRepository, sagaCommandPublisher);
+        verify(transferSagaMetrics, times(2)).recordDiscardedReply("CheckClubBudgetResponse", "no-longer-awaited");
+    }
+
+    @Test
+    public void testHandleCheckPlayerAvailabilityResponse_AwaitedReplyLoadsRowOnce() {
+        // Given: lo stato in cache può essere indietro, la risposta è attesa in uno stato successivo
+        String sagaId = "test-saga-id";
+        CheckPlayerAvailabilityResponse response = CheckPlayerAvailabilityResponse.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .playerAvailable(true)
+                .build();
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.CLUB_BUDGET_CHECKED)
+                .build();
+        when(transferSagaCache.peek(sagaId)).thenReturn(Optional.of(status(sagaId, TransferSagaState.STARTED)));
+        when(transferSagaRepository.findBySagaId(sagaId)).thenReturn(Optional.of(saga));
+
+        // When
+        transferSagaManager.handleCheckPlayerAvailabilityResponse(response);
+
+        // Then
+        verify(transferSagaRepository, times(1)).findBySagaId(sagaId);
+        assertEquals(TransferSagaState.PLAYER_AVAILABILITY_CHECKED, saga.getCurrentState());
+    }
+
+    @Test
+    public void testHandleUpdateClubBudgetResponse_TerminalSagaInCache() {
+        // Given
+        String sagaId = "test-saga-id";
+        UpdateClubBudgetResponse response = UpdateClubBudgetResponse.builder()
+                .sagaId(sagaId)
+                .clubId(2L)
+                .updated(true)
+                .build();
+
+        when(transferSagaCache.peek(sagaId)).thenReturn(Optional.of(status(sagaId, TransferSagaState.COMPLETED)));
+
+        // When
+        transferSagaManager.handleUpdateClubBudgetResponse(response);
+
+        // Then
+        verify(transferSagaRepository, never()).findBySagaId(anyString());
+        verify(transferSagaRepository, never()).save(any(TransferSaga.class));
+        verifyNoInteractions(sagaCommandPublisher);
+    }
+
+    @Test
+    public void testStartTransferSaga_ParallelChecks() {
+        // Given
+        ReflectionTestUtils.setField(transferSagaManager, "parallelChecks", true);
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId("test-saga-id")
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.STARTED)
+                .build();
+
+        // When
+        transferSagaManager.initializeTransferSaga(saga);
+        transferSagaManager.startTransferSaga(saga);
+
+        // Then
+        verify(sagaCommandPublisher, times(1)).send(eq("checkClubBudgetRequest-out-0"), sagaWithId("test-saga-id"), any(CheckClubBudgetRequest.class));
+        verify(sagaCommandPublisher, times(1)).send(eq("checkPlayerAvailabilityRequest-out-0"), sagaWithId("test-saga-id"), any(CheckPlayerAvailabilityRequest.class));
+        assertEquals(TransferSagaState.CHECKS_PENDING, saga.getCurrentState());
+    }
+
+    @Test
+    public void testParallelChecks_AdvancesOnlyWhenBothPassed() {
+        // Given
+        String sagaId = "test-saga-id";
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.CHECKS_PENDING)
+                .build();
+
+        when(transferSagaRepository.findBySagaId(sagaId)).thenReturn(Optional.of(saga));
+
+        // When: prima risposta
+        transferSagaManager.handleCheckPlayerAvailabilityResponse(CheckPlayerAvailabilityResponse.builder()
+                .sagaId(sagaId).playerId(1L).playerAvailable(true).build());
+
+        // Then
+        assertEquals(TransferSagaState.CHECKS_PENDING, saga.getCurrentState());
+        assertTrue(saga.isPlayerAvailabilityChecked());
+        verify(sagaCommandPublisher, never()).send(anyString(), any(), any());
+
+        // When: seconda risposta
+        transferSagaManager.handleCheckClubBudgetResponse(CheckClubBudgetResponse.builder()
+                .sagaId(sagaId).clubId(2L).budgetAvailable(true).build());
+
+        // Then
+        assertEquals(TransferSagaState.PLAYER_AVAILABILITY_CHECKED, saga.getCurrentState());
+        verify(sagaCommandPublisher, times(1)).send(eq("updatePlayerClubRequest-out-0"), sagaWithId(sagaId), any(UpdatePlayerClubRequest.class));
+    }
+
+    @Test
+    public void testParallelChecks_LateReplyAfterFailureIsIgnored() {
+        // Given
+        String sagaId = "test-saga-id";
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.CHECKS_PENDING)
+                .build();
+
+        when(transferSagaRepository.findBySagaId(sagaId)).thenReturn(Optional.of(saga));
+
+        // When
+        transferSagaManager.handleCheckClubBudgetResponse(CheckClubBudgetResponse.builder()
+                .sagaId(sagaId).clubId(2L).budgetAvailable(false).errorMessage("Budget insufficiente").build());
+        transferSagaManager.handleCheckPlayerAvailabilityResponse(CheckPlayerAvailabilityResponse.builder()
+                .sagaId(sagaId).playerId(1L).playerAvailable(true).build());
+
+        // Then
         assertEquals(TransferSagaState.FAILED, saga.getCurrentState());
+        verify(transferSagaRepository, times(1)).save(saga);
+        verify(sagaCommandPublisher, never()).send(anyString(), any(), any());
+    }
+
+    @Test
+    public void testHandleTimeout_ResendsPendingCommand() {
+        // Given
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId("test-saga-id")
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.PLAYER_CLUB_UPDATED)
+                .attempts(1)
+                .build();
+
+        // When
+        transferSagaManager.handleTimeout(saga);
+
+        // Then
+        verify(sagaCommandPublisher, times(1)).send(eq("updateClubBudgetRequest-out-0"), sagaWithId("test-saga-id"), any(UpdateClubBudgetRequest.class));
+        verify(transferSagaMetrics).recordTimeout(TransferSagaState.PLAYER_CLUB_UPDATED, "retry");
+        assertEquals(TransferSagaState.PLAYER_CLUB_UPDATED, saga.getCurrentState());
+        assertEquals(2, saga.getAttempts());
+        assertNotNull(saga.getDeadline());
+    }
+
+    @Test
+    public void testHandleTimeout_FailsAndCompensatesAfterMaxAttempts() {
+        // Given
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId("test-saga-id")
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.PLAYER_CLUB_UPDATED)
+                .attempts(3)
+                .build();
+
+        // When
+        transferSagaManager.handleTimeout(saga);
+
+        // Then
+        verify(sagaCommandPublisher, never()).send(eq("updateClubBudgetRequest-out-0"), any(), any());
+        verify(sagaCommandPublisher, times(1)).send(eq("updatePlayerClubRequest-out-0"), sagaWithId("test-saga-id"), any(UpdatePlayerClubRequest.class));
+        assertEquals(TransferSagaState.FAILED, saga.getCurrentState());
+        assertNull(saga.getDeadline());
+    }
+
+    @Test
+    public void testHandleUpdateClubBudgetResponse_DuplicateDropped() {
+        // Given
+        UpdateClubBudgetResponse response = UpdateClubBudgetResponse.builder()
+                .sagaId("test-saga-id")
+                .clubId(2L)
+                .updated(true)
+                .build();
+
+        when(processedReplyStore.isProcessed(TransferSagaManager.replyKey(TransferSagaDefinition.UPDATE_CLUB_BUDGET_REPLY, "test-saga-id"))).thenReturn(true);
+
+        // When
+        transferSagaManager.handleUpdateClubBudgetResponse(response);
+
+        // Then
+        verifyNoInteractions(transferSagaRepository);
+        verifyNoInteractions(sagaCommandPublisher);
+        verify(transferSagaMetrics).recordDiscardedReply("UpdateClubBudgetResponse", "duplicate");
+    }
+
+    @Test
+    public void testHandleUpdatePlayerClubResponse_UnexpectedStateIgnored() {
+        // Given: risposta riconsegnata dopo che il saga è già passato a PLAYER_CLUB_UPDATED
+        String sagaId = "test-saga-id";
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(TransferSagaState.PLAYER_CLUB_UPDATED)
+                .build();
+        UpdatePlayerClubResponse response = UpdatePlayerClubResponse.builder()
+                .sagaId(sagaId)
+                .playerId(1L)
+                .updated(true)
+                .build();
+
+        when(transferSagaRepository.findBySagaId(sagaId)).thenReturn(Optional.of(saga));
+
+        // When
+        transferSagaManager.handleUpdatePlayerClubResponse(response);
+
+        // Then
+        verify(transferSagaRepository, never()).save(any(TransferSaga.class));
+        verifyNoInteractions(sagaCommandPublisher);
+        verify(processedReplyStore).markProcessed(TransferSagaManager.replyKey(TransferSagaDefinition.UPDATE_PLAYER_CLUB_REPLY, sagaId));
+        assertEquals(TransferSagaState.PLAYER_CLUB_UPDATED, saga.getCurrentState());
+    }
+
+    private static TransferSaga sagaWithId(String sagaId) {
+        return argThat(saga -> saga != null && sagaId.equals(saga.getSagaId()));
+    }
+
+    private TransferStatusResponse status(String sagaId, TransferSagaState state) {
+        return TransferStatusResponse.builder().sagaId(sagaId).state(state.name()).build();
     }
 }
@@ -0,0 +1,106 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import com.example.transferservice.repository.TransferSagaRepository;
+import com.example.transferservice.repository.TransferSagaRepository.StateCount;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferSagaMetricsTest {
+
+    @Mock
+    private TransferSagaRepository transferSagaRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransferSagaMetrics transferSagaMetrics;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transferSagaMetrics = new TransferSagaMetrics(meterRegistry, transferSagaRepository);
+    }
+
+    @Test
+    public void testRecordTransition_TerminalRecordsDuration() {
+        // Given
+        TransferSaga saga = TransferSaga.builder()
+                .sagaId("test-saga-id")
+                .currentState(TransferSagaState.CLUB_BUDGET_UPDATED)
+                .createdAt(LocalDateTime.now().minusSeconds(10))
+                .updatedAt(LocalDateTime.now().minusSeconds(2))
+                .build();
+
+        // When
+        transferSagaMetrics.recordTransition(saga, TransferSagaState.COMPLETED, saga.getUpdatedAt());
+
+        // Then
+        double transitionSeconds = meterRegistry.get("transfer.saga.transition")
+                .tag("from", "CLUB_BUDGET_UPDATED").tag("to", "COMPLETED")
+                .timer().totalTime(TimeUnit.SECONDS);
+        double durationSeconds = meterRegistry.get("transfer.saga.duration")
+                .tag("outcome", "COMPLETED")
+                .timer().totalTime(TimeUnit.SECONDS);
+        assertTrue(transitionSeconds >= 2 && transitionSeconds < 10);
+        assertTrue(durationSeconds >= 10);
+    }
+
+    @Test
+    public void testRefreshInFlight() {
+        // Given
+        when(transferSagaRepository.countActiveByState()).thenReturn(List.of(stateCount(TransferSagaState.STARTED, 7)));
+
+        // When
+        transferSagaMetrics.refreshInFlight();
+
+        // Then
+        assertEquals(7, meterRegistry.get("transfer.saga.in.flight").tag("state", "STARTED").gauge().value());
+        assertEquals(0, meterRegistry.get("transfer.saga.in.flight").tag("state", "PLAYER_CLUB_UPDATED").gauge().value());
+        assertNull(meterRegistry.find("transfer.saga.in.flight").tag("state", "COMPLETED").gauge());
+    }
+
+    @Test
+    public void testRecordConsumeLag_Batch() {
+        // Given
+        long now = System.currentTimeMillis();
+        var message = MessageBuilder.withPayload(List.of("a", "b"))
+                .setHeader(KafkaHeaders.RECEIVED_TIMESTAMP, List.of(now - 1000, now - 3000))
+                .build();
+
+        // When
+        transferSagaMetrics.recordConsumeLag("checkClubBudgetResponse-in-0", message);
+
+        // Then
+        var timer = meterRegistry.get("transfer.stream.consume.lag").tag("binding", "checkClubBudgetResponse-in-0").timer();
+        assertEquals(2, timer.count());
+        assertTrue(timer.max(TimeUnit.MILLISECONDS) >= 3000);
+    }
+
+    private static StateCount stateCount(TransferSagaState state, long count) {
+        return new StateCount() {
+            @Override
+            public TransferSagaState getState() {
+                return state;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -1,18 +1,33 @@
 package com.example.transferservice.service;
 
+import com.example.transferservice.controller.TransferRequest;
+import com.example.transferservice.dto.TransferSagaSummary;
+import com.example.transferservice.dto.TransferSearchCriteria;
+import com.example.transferservice.dto.TransferSearchCursor;
+import com.example.transferservice.dto.TransferSearchResponse;
 import com.example.transferservice.entity.TransferSaga;
 import com.example.transferservice.repository.TransferSagaRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,6 +39,15 @@ public class TransferServiceTest {
     @Mock
     private TransferSagaManager transferSagaManager;
 
+    @Mock
+    private TransferSagaCache transferSagaCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransferReservations transferReservations;
+
     @InjectMocks
     private TransferService transferService;
 
@@ -45,11 +69,97 @@ public class TransferServiceTest {
         // When
         String sagaId = transferService.initiateTransfer(playerId, fromClubId, toClubId, transferFee);
         
-        // Then
-        verify(transferSagaRepository, times(1)).save(any(TransferSaga.class));
-        verify(transferSagaManager, times(1)).startTransferSaga(any(TransferSaga.class));
+        // Then: lo stato iniziale è deciso prima dell'unico insert
+        InOrder inOrder = inOrder(transferSagaManager, transferSagaRepository);
+        inOrder.verify(transferSagaManager).initializeTransferSaga(any(TransferSaga.class));
+        inOrder.verify(transferSagaRepository).save(any(TransferSaga.class));
+        inOrder.verify(transferSagaManager).startTransferSaga(any(TransferSaga.class));
         
         // Verifica che l'ID del saga non sia nullo
         assertEquals(36, sagaId.length()); // UUID standard length
     }
+
+    @Test
+    public void testInitiateTransfers() {
+        // Given
+        List<TransferRequest> requests = List.of(
+                new TransferRequest(1L, 2L, 3L, new BigDecimal("1000000")),
+                new TransferRequest(4L, 5L, 6L, new BigDecimal("2000000")));
+
+        // When
+        List<String> sagaIds = transferService.initiateTransfers(requests);
+
+        // Then
+        verify(transferSagaManager, times(2)).initializeTransferSaga(any(TransferSaga.class));
+        verify(transferSagaRepository, times(1)).saveAll(anyList());
+        verify(transferSagaRepository, never()).save(any(TransferSaga.class));
+        verify(transferSagaManager, times(1)).startTransferSagas(anyList());
+        assertEquals(2, sagaIds.size());
+    }
+
+    @Test
+    public void testInitiateTransfer_PlayerAlreadyInFlight() {
+        // Given
+        when(transferReservations.reserve(eq(1L), anyString())).thenReturn(Optional.of("saga-attivo"));
+
+        // When
+        TransferConflictException conflict = assertThrows(TransferConflictException.class,
+                () -> transferService.initiateTransfer(1L, 2L, 3L, new BigDecimal("1000000")));
+
+        // Then
+        assertEquals("saga-attivo", conflict.getActiveSagaId());
+        verifyNoInteractions(transferSagaRepository, transferSagaManager, eventPublisher);
+    }
+
+    @Test
+    public void testInitiateTransfers_SamePlayerTwiceInBatch() {
+        // Given
+        List<TransferRequest> requests = List.of(
+                new TransferRequest(1L, 2L, 3L, new BigDecimal("1000000")),
+                new TransferRequest(1L, 4L, 5L, new BigDecimal("2000000")));
+        when(transferReservations.reserve(eq(1L), anyString()))
+                .thenReturn(Optional.empty())
+                .thenAnswer(invocation -> Optional.of("saga-del-blocco"));
+
+        // When & Then
+        assertThrows(TransferConflictException.class, () -> transferService.initiateTransfers(requests));
+        verifyNoInteractions(transferSagaRepository, transferSagaManager);
+    }
+
+    @Test
+    public void testSearchTransfers_NextCursorFromLastRowOfPage() {
+        // Given
+        TransferSearchCriteria criteria = TransferSearchCriteria.builder().playerId(1L).build();
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 0);
+        List<TransferSagaSummary> rows = List.of(summary(30L, createdAt), summary(20L, createdAt), summary(10L, createdAt.minusHours(1)));
+        when(transferSagaRepository.searchSummaries(criteria, null, 3)).thenReturn(rows);
+
+        // When
+        TransferSearchResponse response = transferService.searchTransfers(criteria, null, 2);
+
+        // Then
+        assertEquals(2, response.getItems().size());
+        assertEquals(new TransferSearchCursor(createdAt, 20L), TransferSearchCursor.decode(response.getNextCursor()));
+    }
+
+    @Test
+    public void testSearchTransfers_LastPage() {
+        // Given
+        TransferSearchCriteria criteria = TransferSearchCriteria.builder().build();
+        TransferSearchCursor after = new TransferSearchCursor(LocalDateTime.of(2024, 5, 1, 10, 0), 20L);
+        when(transferSagaRepository.searchSummaries(criteria, after, 3))
+                .thenReturn(List.of(summary(10L, LocalDateTime.of(2024, 5, 1, 9, 0))));
+
+        // When
+        TransferSearchResponse response = transferService.searchTransfers(criteria, after, 2);
+
+        // Then
+        assertEquals(1, response.getItems().size());
+        assertNull(response.getNextCursor());
+    }
+
+    private TransferSagaSummary summary(Long id, LocalDateTime createdAt) {
+        return new TransferSagaSummary(id, UUID.randomUUID().toString(), 1L, 2L, 3L, new BigDecimal("1000000"),
+                TransferSaga.TransferSagaState.COMPLETED, createdAt, createdAt);
+    }
 }
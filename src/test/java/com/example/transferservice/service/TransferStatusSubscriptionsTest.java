@@ -0,0 +1,228 @@
+package com.example.transferservice.service;
+
+import com.example.transferservice.dto.TransferStatusResponse;
+import com.example.transferservice.entity.TransferSaga;
+import com.example.transferservice.entity.TransferSaga.TransferSagaState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransferStatusSubscriptionsTest {
+
+    private static final String SAGA_ID = "7f1c1f5e-1d1b-4b8e-9d8a-0a4c2b7e6f10";
+
+    @Mock
+    private TransferSagaCache transferSagaCache;
+
+    private TransferStatusSubscriptions transferStatusSubscriptions;
+
+    private LocalDateTime updatedAt = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+    @BeforeEach
+    public void setUp() {
+        transferStatusSubscriptions = new TransferStatusSubscriptions(transferSagaCache, new SimpleMeterRegistry(), 2, Runnable::run);
+    }
+
+    @Test
+    public void testSubscribe_SendsCurrentStateThenChangesUntilTerminal() {
+        // Given
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.STARTED)));
+
+        // When
+        transferStatusSubscriptions.subscribe(SAGA_ID, subscriber);
+        transferStatusSubscriptions.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.CLUB_BUDGET_CHECKED)));
+        transferStatusSubscriptions.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.COMPLETED)));
+
+        // Then
+        assertEquals(List.of("STARTED", "CLUB_BUDGET_CHECKED", "COMPLETED"), subscriber.states);
+        assertTrue(subscriber.completed);
+        assertEquals(0, transferStatusSubscriptions.size());
+    }
+
+    @Test
+    public void testOnTransferSagaChanged_DeliversIntermediateStatesOfOneTransaction() {
+        // Given: CLUB_BUDGET_UPDATED e COMPLETED salvati nella stessa transazione, eventi consegnati dopo il commit
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.PLAYER_CLUB_UPDATED)));
+        transferStatusSubscriptions.subscribe(SAGA_ID, subscriber);
+        TransferSaga saga = saga(TransferSagaState.CLUB_BUDGET_UPDATED);
+        TransferSagaChangedEvent updated = new TransferSagaChangedEvent(saga);
+        saga.setCurrentState(TransferSagaState.COMPLETED);
+        saga.setUpdatedAt(saga.getUpdatedAt().plusNanos(1000));
+        TransferSagaChangedEvent completed = new TransferSagaChangedEvent(saga);
+
+        // When
+        transferStatusSubscriptions.onTransferSagaChanged(updated);
+        transferStatusSubscriptions.onTransferSagaChanged(completed);
+
+        // Then
+        assertEquals(List.of("PLAYER_CLUB_UPDATED", "CLUB_BUDGET_UPDATED", "COMPLETED"), subscriber.states);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testOnRemoteStateChanged_SkipsAlreadySentState() {
+        // Given
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.STARTED)));
+        transferStatusSubscriptions.subscribe(SAGA_ID, subscriber);
+
+        // When: eco della notifica di uno stato già inviato, poi un cambio fatto da un'altra istanza
+        transferStatusSubscriptions.onRemoteStateChanged(SAGA_ID);
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.FAILED)));
+        transferStatusSubscriptions.onRemoteStateChanged(SAGA_ID);
+
+        // Then
+        assertEquals(List.of("STARTED", "FAILED"), subscriber.states);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testSubscribe_RejectedOverLimitAndReleasedOnCancel() {
+        // Given
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.STARTED)));
+        Optional<TransferStatusSubscriptions.Subscription> first = transferStatusSubscriptions.subscribe(SAGA_ID, new RecordingSubscriber());
+        transferStatusSubscriptions.subscribe(SAGA_ID, new RecordingSubscriber());
+
+        // When
+        Optional<TransferStatusSubscriptions.Subscription> rejected = transferStatusSubscriptions.subscribe(SAGA_ID, new RecordingSubscriber());
+        first.orElseThrow().cancel();
+        first.orElseThrow().cancel();
+
+        // Then
+        assertTrue(rejected.isEmpty());
+        assertEquals(1, transferStatusSubscriptions.size());
+        assertTrue(transferStatusSubscriptions.subscribe(SAGA_ID, new RecordingSubscriber()).isPresent());
+    }
+
+    @Test
+    public void testPush_DropsUnreachableSubscriber() throws Exception {
+        // Given
+        TransferStatusSubscriptions.Subscriber subscriber = mock(TransferStatusSubscriptions.Subscriber.class);
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.empty());
+        transferStatusSubscriptions.subscribe(SAGA_ID, subscriber);
+
+        // When
+        doThrow(new IOException("Broken pipe")).when(subscriber).send(any());
+        transferStatusSubscriptions.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.STARTED)));
+
+        // Then
+        assertEquals(0, transferStatusSubscriptions.size());
+        verify(subscriber, never()).complete();
+    }
+
+    @Test
+    public void testPush_DropsOlderStateArrivingAfterNewerOne() {
+        // Given: lo stato corrente letto dal database è già alla versione successiva al commit locale
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.PLAYER_CLUB_UPDATED, 2)));
+        transferStatusSubscriptions.subscribe(SAGA_ID, subscriber);
+
+        // When: l'evento after-commit della transazione precedente arriva in ritardo
+        transferStatusSubscriptions.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.PLAYER_AVAILABILITY_CHECKED, 1)));
+        transferStatusSubscriptions.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.CLUB_BUDGET_UPDATED, 2)));
+
+        // Then
+        assertEquals(List.of("PLAYER_CLUB_UPDATED", "CLUB_BUDGET_UPDATED"), subscriber.states);
+    }
+
+    @Test
+    public void testPush_SendsOnTheStreamPoolInOrder() {
+        // Given
+        List<Runnable> sendTasks = new ArrayList<>();
+        transferStatusSubscriptions = new TransferStatusSubscriptions(transferSagaCache, new SimpleMeterRegistry(), 2, sendTasks::add);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.STARTED)));
+        transferStatusSubscriptions.subscribe(SAGA_ID, subscriber);
+
+        // When: il thread del commit accoda soltanto
+        transferStatusSubscriptions.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.CLUB_BUDGET_CHECKED)));
+        transferStatusSubscriptions.onTransferSagaChanged(new TransferSagaChangedEvent(saga(TransferSagaState.FAILED)));
+
+        // Then: un solo drain, che invia tutto nell'ordine
+        assertTrue(subscriber.states.isEmpty());
+        assertEquals(1, sendTasks.size());
+        sendTasks.get(0).run();
+        assertEquals(List.of("STARTED", "CLUB_BUDGET_CHECKED", "FAILED"), subscriber.states);
+        assertTrue(subscriber.completed);
+        assertEquals(0, transferStatusSubscriptions.size());
+    }
+
+    @Test
+    public void testPush_ClosesStreamWhenSendPoolIsSaturated() {
+        // Given
+        transferStatusSubscriptions = new TransferStatusSubscriptions(transferSagaCache, new SimpleMeterRegistry(), 2,
+                task -> {
+                    throw new RejectedExecutionException("coda piena");
+                });
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        when(transferSagaCache.get(SAGA_ID)).thenReturn(Optional.of(status(TransferSagaState.STARTED)));
+
+        // When
+        transferStatusSubscriptions.subscribe(SAGA_ID, subscriber);
+
+        // Then
+        assertTrue(subscriber.states.isEmpty());
+        assertTrue(subscriber.completed);
+        assertEquals(0, transferStatusSubscriptions.size());
+    }
+
+    private TransferStatusResponse status(TransferSagaState state) {
+        return TransferService.toStatusResponse(saga(state));
+    }
+
+    private TransferStatusResponse status(TransferSagaState state, long version) {
+        return TransferService.toStatusResponse(saga(state, version));
+    }
+
+    private TransferSaga saga(TransferSagaState state) {
+        return saga(state, 0);
+    }
+
+    // Ogni saga costruito è successivo al precedente: updatedAt avanza come nelle transizioni
+    private TransferSaga saga(TransferSagaState state, long version) {
+        updatedAt = updatedAt.plusSeconds(1);
+        return TransferSaga.builder()
+                .sagaId(SAGA_ID)
+                .playerId(1L)
+                .fromClubId(2L)
+                .toClubId(3L)
+                .transferFee(new BigDecimal("1000000"))
+                .currentState(state)
+                .version(version)
+                .updatedAt(updatedAt)
+                .build();
+    }
+
+    private static class RecordingSubscriber implements TransferStatusSubscriptions.Subscriber {
+
+        private final List<String> states = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void send(TransferStatusResponse status) {
+            states.add(status.getState());
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
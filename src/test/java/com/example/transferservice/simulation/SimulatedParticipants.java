@@ -0,0 +1,253 @@
+package com.example.transferservice.simulation;
+
+import com.example.transferservice.messages.CheckClubBudgetRequest;
+import com.example.transferservice.messages.CheckClubBudgetResponse;
+import com.example.transferservice.messages.CheckPlayerAvailabilityRequest;
+import com.example.transferservice.messages.CheckPlayerAvailabilityResponse;
+import com.example.transferservice.messages.UpdateClubBudgetRequest;
+import com.example.transferservice.messages.UpdateClubBudgetResponse;
+import com.example.transferservice.messages.UpdatePlayerClubRequest;
+import com.example.transferservice.messages.UpdatePlayerClubResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Servizi club e giocatore simulati in-process, per i test end-to-end e di carico su un broker Kafka embedded:
+ * leggono i quattro topic dei comandi e rispondono sul topic di risposta con la stessa chiave del comando,
+ * dopo la latenza e con il tasso di fallimento configurati per ogni passo. La verifica del budget fallisce anche
+ * quando il prezzo supera clubBudget. Il club di ogni giocatore aggiornato viene tenuto in memoria, così alla fine
+ * di un test si può controllare che le compensazioni lo abbiano ripristinato.
+ * I comandi devono essere JSON, il formato di default dei binding.
+ */
+public class SimulatedParticipants implements AutoCloseable {
+
+    public enum Step {
+        CHECK_CLUB_BUDGET("check-club-budget"),
+        CHECK_PLAYER_AVAILABILITY("check-player-availability"),
+        UPDATE_PLAYER_CLUB("update-player-club"),
+        UPDATE_CLUB_BUDGET("update-club-budget");
+
+        private final String name;
+
+        Step(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        String requestTopic() {
+            return name + "-request";
+        }
+
+        String replyTopic() {
+            return name + "-response";
+        }
+    }
+
+    /**
+     * Comportamento di un passo: ogni risposta parte dopo latency più un ritardo uniforme in [0, jitter)
+     * ed è negativa con probabilità failureRate.
+     */
+    public record Behavior(Duration latency, Duration jitter, double failureRate) {
+
+        public static final Behavior IMMEDIATE = new Behavior(Duration.ZERO, Duration.ZERO, 0.0);
+    }
+
+    // Topic dei comandi e delle risposte più quello delle notifiche di stato, da creare sul broker embedded
+    public static final String[] TOPICS = Stream.concat(
+                    Arrays.stream(Step.values()).flatMap(step -> Stream.of(step.requestTopic(), step.replyTopic())),
+                    Stream.of("transfer-saga-state-changed"))
+            .toArray(String[]::new);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Step, Behavior> behaviors;
+    private final BigDecimal clubBudget;
+    private final Random random;
+    private final Map<String, Step> steps = new ConcurrentHashMap<>();
+    private final Map<Step, AtomicLong> commands = new EnumMap<>(Step.class);
+    private final Map<Step, AtomicLong> failures = new EnumMap<>(Step.class);
+    private final Map<Long, Long> playerClubs = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingReplies = new AtomicInteger();
+    private final KafkaConsumer<byte[], byte[]> consumer;
+    private final KafkaProducer<byte[], byte[]> producer;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "simulated-participants-replies"));
+    private final Thread worker;
+
+    /**
+     * Partecipanti che rispondono subito e sempre con esito positivo.
+     */
+    public SimulatedParticipants(String brokers) {
+        this(brokers, Map.of(), null, 0L);
+    }
+
+    /**
+     * @param behaviors  comportamento per passo, {@link Behavior#IMMEDIATE} per i passi assenti
+     * @param clubBudget budget di ogni club, null per nessun limite
+     * @param seed       seme di latenze e fallimenti, per ripetere la stessa sequenza di esiti
+     */
+    public SimulatedParticipants(String brokers, Map<Step, Behavior> behaviors, BigDecimal clubBudget, long seed) {
+        this.behaviors = new EnumMap<>(Step.class);
+        for (Step step : Step.values()) {
+            this.behaviors.put(step, behaviors.getOrDefault(step, Behavior.IMMEDIATE));
+            steps.put(step.requestTopic(), step);
+            commands.put(step, new AtomicLong());
+            failures.put(step, new AtomicLong());
+        }
+        this.clubBudget = clubBudget;
+        this.random = new Random(seed);
+
+        consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ConsumerConfig.GROUP_ID_CONFIG, "simulated-participants",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                // Nessun commit degli offset: alla chiusura il broker embedded può essere già fermo
+                ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false,
+                ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1000),
+                new ByteArrayDeserializer(), new ByteArrayDeserializer());
+        producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ProducerConfig.LINGER_MS_CONFIG, 1),
+                new ByteArraySerializer(), new ByteArraySerializer());
+        consumer.subscribe(steps.keySet());
+        worker = new Thread(this::answer, "simulated-participants");
+        worker.start();
+    }
+
+    private void answer() {
+        try {
+            while (true) {
+                for (ConsumerRecord<byte[], byte[]> command : consumer.poll(Duration.ofMillis(100))) {
+                    Step step = steps.get(command.topic());
+                    Behavior behavior = behaviors.get(step);
+                    // Latenza ed esito si estraggono qui, sull'unico thread del consumer: la sequenza dipende solo dal seme
+                    boolean fail = random.nextDouble() < behavior.failureRate();
+                    long delay = behavior.latency().toMillis() + jitter(behavior.jitter());
+                    commands.get(step).incrementAndGet();
+                    if (delay > 0) {
+                        pendingReplies.incrementAndGet();
+                        scheduler.schedule(() -> {
+                            reply(step, command, fail);
+                            pendingReplies.decrementAndGet();
+                        }, delay, TimeUnit.MILLISECONDS);
+                    } else {
+                        reply(step, command, fail);
+                    }
+                }
+            }
+        } catch (WakeupException e) {
+            // chiusura
+        } finally {
+            consumer.close();
+        }
+    }
+
+    private long jitter(Duration jitter) {
+        return jitter.isZero() ? 0 : (long) (random.nextDouble() * jitter.toMillis());
+    }
+
+    private void reply(Step step, ConsumerRecord<byte[], byte[]> command, boolean fail) {
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(response(step, command.value(), fail));
+            producer.send(new ProducerRecord<>(step.replyTopic(), command.key(), payload));
+        } catch (IOException e) {
+            throw new IllegalStateException("Comando non JSON su " + command.topic(), e);
+        }
+    }
+
+    private Object response(Step step, byte[] command, boolean fail) throws IOException {
+        return switch (step) {
+            case CHECK_CLUB_BUDGET -> {
+                CheckClubBudgetRequest request = objectMapper.readValue(command, CheckClubBudgetRequest.class);
+                boolean covered = clubBudget == null || request.getTransferFee().compareTo(clubBudget) <= 0;
+                yield new CheckClubBudgetResponse(request.getSagaId(), request.getClubId(), !fail && covered,
+                        outcome(step, fail, covered ? null : "budget insufficiente"));
+            }
+            case CHECK_PLAYER_AVAILABILITY -> {
+                CheckPlayerAvailabilityRequest request = objectMapper.readValue(command, CheckPlayerAvailabilityRequest.class);
+                yield new CheckPlayerAvailabilityResponse(request.getSagaId(), request.getPlayerId(), !fail, outcome(step, fail, null));
+            }
+            case UPDATE_PLAYER_CLUB -> {
+                UpdatePlayerClubRequest request = objectMapper.readValue(command, UpdatePlayerClubRequest.class);
+                if (!fail) {
+                    playerClubs.put(request.getPlayerId(), request.getNewClubId());
+                }
+                yield new UpdatePlayerClubResponse(request.getSagaId(), request.getPlayerId(), !fail, outcome(step, fail, null));
+            }
+            case UPDATE_CLUB_BUDGET -> {
+                UpdateClubBudgetRequest request = objectMapper.readValue(command, UpdateClubBudgetRequest.class);
+                yield new UpdateClubBudgetResponse(request.getSagaId(), request.getClubId(), !fail, outcome(step, fail, null));
+            }
+        };
+    }
+
+    private String outcome(Step step, boolean fail, String rejection) {
+        if (fail) {
+            failures.get(step).incrementAndGet();
+            return "errore simulato di " + step.getName();
+        }
+        return rejection;
+    }
+
+    public long commands(Step step) {
+        return commands.get(step).get();
+    }
+
+    public long failures(Step step) {
+        return failures.get(step).get();
+    }
+
+    // Risposte in attesa della latenza simulata, non ancora inviate
+    public int pendingReplies() {
+        return pendingReplies.get();
+    }
+
+    /**
+     * Club assegnato al giocatore dall'ultimo updatePlayerClub riuscito, empty se non è mai stato spostato.
+     */
+    public Optional<Long> playerClub(Long playerId) {
+        return Optional.ofNullable(playerClubs.get(playerId));
+    }
+
+    @Override
+    public void close() {
+        consumer.wakeup();
+        try {
+            worker.join();
+            scheduler.shutdown();
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // Le risposte ancora in attesa vengono scartate; l'interruzione resta visibile al chiamante
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            producer.close();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- Solo profilo benchmark: copia di transfer_saga (colonne, vincoli e indici) con id IDENTITY, per confrontare
+-- in TransferSagaInsertBenchmark gli insert con IDENTITY e con la sequenza pooled sullo stesso schema.
+-- Ricreata a ogni modifica di questo file
+DROP TABLE IF EXISTS transfer_saga_identity_benchmark;
+CREATE TABLE transfer_saga_identity_benchmark (LIKE transfer_saga INCLUDING ALL);
+ALTER TABLE transfer_saga_identity_benchmark ALTER COLUMN id ADD GENERATED BY DEFAULT AS IDENTITY;